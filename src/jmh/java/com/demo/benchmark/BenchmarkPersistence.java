@@ -0,0 +1,52 @@
+package com.demo.benchmark;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Outils communs aux benchmarks : création des EntityManagerFactory sans la
+ * trace SQL ni les logs debug d'hibernate, qui fausseraient les mesures.
+ */
+final class BenchmarkPersistence {
+
+    /**
+     * unité de persistance sans p6spy.
+     */
+    static final String PERSISTENCE_UNIT = "persistence-unit";
+
+    /**
+     * unité de persistance avec p6spy.
+     */
+    static final String PERSISTENCE_UNIT_P6SPY = "persistence-unit-p6spy";
+
+    private BenchmarkPersistence() {
+    }
+
+    /**
+     * Crée la factory de l'unité demandée. Pour l'unité p6spy, la trace texte
+     * est écrite dans target/p6spy-benchmark.log (sauf si l'appender est déjà
+     * fixé par -Dp6spy.config.appender) : le coût du spy est mesuré sans
+     * inonder la sortie de JMH.
+     *
+     * @param persistenceUnit nom de l'unité de persistance
+     * @return l'entity manager factory
+     */
+    static EntityManagerFactory createEntityManagerFactory(final String persistenceUnit) {
+        // par défaut hsqldb passe le niveau racine de java.util.logging à ALL :
+        // hibernate construirait alors tous ses messages debug / trace
+        if (System.getProperty("hsqldb.reconfig_logging") == null) {
+            System.setProperty("hsqldb.reconfig_logging", "false");
+        }
+        if (PERSISTENCE_UNIT_P6SPY.equals(persistenceUnit) && System.getProperty("p6spy.config.appender") == null) {
+            System.setProperty("p6spy.config.appender", "com.p6spy.engine.spy.appender.FileLogger");
+            System.setProperty("p6spy.config.logfile", "target/p6spy-benchmark.log");
+        }
+        final Map<String, Object> overrides = new HashMap<>();
+        overrides.put("hibernate.show_sql", "false");
+        overrides.put("hibernate.format_sql", "false");
+        return Persistence.createEntityManagerFactory(persistenceUnit, overrides);
+    }
+
+}
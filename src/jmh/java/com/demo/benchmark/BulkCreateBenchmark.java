@@ -0,0 +1,114 @@
+package com.demo.benchmark;
+
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insertion de {@link #ROWS} personnes : boucle sur create() contre
+ * createAll() en batch JDBC. Le score est exprimé en lignes par seconde.
+ * <p>
+ * L'unité de persistance active le batch JDBC : createLoop le coupe sur la
+ * session (batch de 1) pour mesurer un INSERT par entité, et ne dépend donc
+ * pas de <code>batchSize</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkCreateBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"1", "50", "500"})
+    private int batchSize;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PersonDaoImpl personDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManager(this.entityManager);
+        this.personDao.setBatchSize(this.batchSize);
+    }
+
+    @TearDown(Level.Iteration)
+    public void purge() {
+        this.entityManager.getTransaction().begin();
+        this.personDao.deleteAll();
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void createLoop() {
+        final Session session = this.entityManager.unwrap(Session.class);
+        session.setJdbcBatchSize(1);
+        try {
+            this.entityManager.getTransaction().begin();
+            for (final Person person : newPersons()) {
+                this.personDao.create(person);
+            }
+            this.entityManager.getTransaction().commit();
+            this.entityManager.clear();
+        } finally {
+            // retour au batch_size de l'unité de persistance
+            session.setJdbcBatchSize(null);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void createAll() {
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(newPersons());
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    private static List<Person> newPersons() {
+        final List<Person> persons = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        return persons;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.demo.benchmark;
+
+import com.demo.dao.ColumnarResult;
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture de toute la table en entités (<code>readAll</code>, contexte de
+ * persistance vidé ensuite) ou en colonnes (<code>readAllColumnar</code>).
+ * Lancer avec <code>-prof gc</code> pour la mémoire allouée par lecture ; les
+ * noms se répètent <code>distinctNames</code> fois pour l'encodage par
+ * dictionnaire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnarReadBenchmark {
+
+    @Param({"10000", "100000"})
+    private int tableSize;
+
+    @Param({"100"})
+    private int distinctNames;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PersonDaoImpl personDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManager(this.entityManager);
+
+        final List<Person> persons = new ArrayList<>(this.tableSize);
+        for (int i = 0; i < this.tableSize; i++) {
+            final Person person = new Person();
+            person.setName("person-" + (i % this.distinctNames));
+            persons.add(person);
+        }
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(persons);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<Person> entities() {
+        final List<Person> persons = this.personDao.readAll();
+        this.entityManager.clear();
+        return persons;
+    }
+
+    @Benchmark
+    public ColumnarResult<Person> columnar() {
+        return this.personDao.readAllColumnar();
+    }
+
+}
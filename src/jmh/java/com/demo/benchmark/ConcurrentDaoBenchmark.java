@@ -0,0 +1,129 @@
+package com.demo.benchmark;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectures par id sur un DAO partagé entre 1, 2, 4 et 8 threads, chaque
+ * thread ayant son propre entity manager via
+ * {@link ThreadLocalEntityManagerProvider}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentDaoBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private ThreadLocalEntityManagerProvider entityManagerProvider;
+
+    private PersonDaoImpl personDao;
+
+    private Integer[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManagerProvider = new ThreadLocalEntityManagerProvider(this.entityManagerFactory);
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManagerProvider(this.entityManagerProvider);
+
+        final List<Person> persons = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        this.entityManagerProvider.inTransaction(entityManager -> {
+            this.personDao.createAll(persons);
+            return null;
+        });
+        this.ids = new Integer[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            this.ids[i] = persons.get(i).getId();
+        }
+        this.entityManagerProvider.release();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManagerFactory.close();
+    }
+
+    /**
+     * Etat propre à chaque thread : vide son contexte de persistance à chaque
+     * itération pour que les lectures aillent bien jusqu'à la base.
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+
+        private ConcurrentDaoBenchmark benchmark;
+
+        @Setup(Level.Iteration)
+        public void setUp(final ConcurrentDaoBenchmark benchmark) {
+            this.benchmark = benchmark;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            this.benchmark.entityManagerProvider.release();
+        }
+
+        Person read() {
+            final ConcurrentDaoBenchmark b = this.benchmark;
+            final Person person = b.personDao.read(b.ids[ThreadLocalRandom.current().nextInt(b.ids.length)]);
+            b.entityManagerProvider.getEntityManager().clear();
+            return person;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Person read1Thread(final Reader reader) {
+        return reader.read();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Person read2Threads(final Reader reader) {
+        return reader.read();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Person read4Threads(final Reader reader) {
+        return reader.read();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Person read8Threads(final Reader reader) {
+        return reader.read();
+    }
+
+}
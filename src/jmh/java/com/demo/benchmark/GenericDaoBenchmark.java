@@ -0,0 +1,160 @@
+package com.demo.benchmark;
+
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût des opérations du DAO générique selon la taille de la table, avec et
+ * sans p6spy : l'écart entre les deux unités de persistance mesure le coût du
+ * spy. Chaque opération vide le contexte de persistance pour aller en base.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GenericDaoBenchmark {
+
+    @Param({BenchmarkPersistence.PERSISTENCE_UNIT, BenchmarkPersistence.PERSISTENCE_UNIT_P6SPY})
+    private String persistenceUnit;
+
+    @Param({"100", "1000", "10000"})
+    private int tableSize;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PersonDaoImpl personDao;
+
+    private List<Integer> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(this.persistenceUnit);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManager(this.entityManager);
+
+        final List<Person> persons = new ArrayList<>(this.tableSize);
+        for (int i = 0; i < this.tableSize; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(persons);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+
+        this.ids = new ArrayList<>(this.tableSize);
+        for (final Person person : persons) {
+            this.ids.add(person.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public Person create() {
+        final Person person = new Person();
+        person.setName("created");
+        this.entityManager.getTransaction().begin();
+        this.personDao.create(person);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+        return person;
+    }
+
+    @Benchmark
+    public Person read() {
+        final Person person = this.personDao.read(this.randomId());
+        this.entityManager.clear();
+        return person;
+    }
+
+    @Benchmark
+    public Person update() {
+        final Person person = new Person();
+        person.setId(this.randomId());
+        person.setName("updated-" + this.randomIndex());
+        this.entityManager.getTransaction().begin();
+        final Person merged = this.personDao.update(person);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+        return merged;
+    }
+
+    @Benchmark
+    public int updateAttributes() {
+        final Map<String, Object> attributes = Collections.singletonMap("name", "updated-" + this.randomIndex());
+        this.entityManager.getTransaction().begin();
+        final int updated = this.personDao.updateAttributes(this.randomId(), attributes);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+        return updated;
+    }
+
+    @Benchmark
+    public List<Person> findByName() {
+        final List<Person> persons = this.personDao.findByName("person-" + this.randomIndex());
+        this.entityManager.clear();
+        return persons;
+    }
+
+    @Benchmark
+    public List<Person> findAllByAttributes() {
+        final Map<String, Object> attributes = Collections.singletonMap("name", "person-" + this.randomIndex());
+        final List<Person> persons = this.personDao.findAllByAttributes(attributes);
+        this.entityManager.clear();
+        return persons;
+    }
+
+    @Benchmark
+    public long count() {
+        return this.personDao.count();
+    }
+
+    @Benchmark
+    public List<Person> readAll() {
+        final List<Person> persons = this.personDao.readAll();
+        this.entityManager.clear();
+        return persons;
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(this.tableSize);
+    }
+
+    private Integer randomId() {
+        return this.ids.get(this.randomIndex());
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.demo.benchmark;
+
+import com.demo.dao.KeysetPage;
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import com.demo.entities.Person_;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latence de lecture d'une page profonde : OFFSET/LIMIT contre pagination par
+ * clé sur <code>Person_.id</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeysetPaginationBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1", "100", "1000"})
+    private int page;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PagingPersonDao personDao;
+
+    private Integer lastSeen;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PagingPersonDao();
+        this.personDao.setEntityManager(this.entityManager);
+
+        final List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE * 1000; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(persons);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+
+        // clé de continuation de la page précédant la page mesurée
+        final int offset = (this.page - 1) * PAGE_SIZE;
+        this.lastSeen = offset == 0 ? null : this.personDao.offsetPage(offset - 1, 1).get(0).getId();
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<Person> offset() {
+        return this.personDao.offsetPage((this.page - 1) * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public KeysetPage<Person, Integer> keyset() {
+        return this.personDao.readPage(Person_.id, this.lastSeen, PAGE_SIZE);
+    }
+
+    /**
+     * expose la pagination par offset, protégée dans le DAO.
+     */
+    static class PagingPersonDao extends PersonDaoImpl {
+
+        List<Person> offsetPage(final int offset, final int limit) {
+            final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+            final CriteriaQuery<Person> cq = cb.createQuery(Person.class);
+            final Root<Person> root = cq.from(Person.class);
+            cq.orderBy(cb.asc(root.get(Person_.id)));
+            return this.findAllByCriteriaQuery(cq, offset, limit);
+        }
+
+    }
+
+}
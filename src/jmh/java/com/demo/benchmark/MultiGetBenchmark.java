@@ -0,0 +1,103 @@
+package com.demo.benchmark;
+
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture de quelques centaines d'entités par id : boucle sur read() contre
+ * readAllById(). Le contexte de persistance est vidé entre deux appels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiGetBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"10", "100", "500"})
+    private int ids;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PersonDaoImpl personDao;
+
+    private List<Integer> idsToRead;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManager(this.entityManager);
+
+        final List<Person> persons = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(persons);
+        this.entityManager.getTransaction().commit();
+
+        final List<Integer> allIds = new ArrayList<>(ROWS);
+        for (final Person person : persons) {
+            allIds.add(person.getId());
+        }
+        Collections.shuffle(allIds, new Random(42));
+        this.idsToRead = new ArrayList<>(allIds.subList(0, this.ids));
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<Person> readLoop() {
+        final List<Person> persons = new ArrayList<>(this.idsToRead.size());
+        for (final Integer id : this.idsToRead) {
+            persons.add(this.personDao.read(id));
+        }
+        return persons;
+    }
+
+    @Benchmark
+    public List<Person> readAllById() {
+        return this.personDao.readAllById(this.idsToRead);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.demo.benchmark;
+
+import com.demo.conf.exception.BeanTechnicalException;
+import com.demo.dao.impl.StringFieldNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * nullifyEmptyStrings : version réflexive d'origine (recopiée ci-dessous)
+ * contre le normaliseur en cache. La version d'origine ne traite que les
+ * champs déclarés par la classe, pas ceux de la classe mère.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class NullifyEmptyStringsBenchmark {
+
+    private final Bean bean = new Bean();
+
+    @Benchmark
+    public Bean reflection() {
+        this.bean.reset();
+        legacyNullifyEmptyStrings(this.bean);
+        return this.bean;
+    }
+
+    @Benchmark
+    public Bean cachedNormalizer() {
+        this.bean.reset();
+        StringFieldNormalizer.of(this.bean.getClass()).nullifyEmptyStrings(this.bean);
+        return this.bean;
+    }
+
+    private static void legacyNullifyEmptyStrings(final Object o) throws BeanTechnicalException {
+        for (final Field f : o.getClass().getDeclaredFields()) {
+            f.setAccessible(true);
+            try {
+                if (f.getType().equals(String.class) && !Modifier.isStatic(f.getModifiers())
+                        && !Modifier.isFinal(f.getModifiers())) {
+                    final String value = (String) f.get(o);
+                    if (value != null && value.trim().isEmpty()) {
+                        f.set(o, null);
+                    }
+                }
+            } catch (final IllegalArgumentException | IllegalAccessException e) {
+                throw new BeanTechnicalException(e);
+            }
+        }
+    }
+
+    static class BaseBean {
+
+        private String createdBy;
+
+        private String updatedBy;
+
+        void reset() {
+            this.createdBy = "admin";
+            this.updatedBy = "  ";
+        }
+    }
+
+    static class Bean extends BaseBean {
+
+        private static final String CONSTANT = "";
+
+        private int id;
+
+        private String name;
+
+        private String firstName;
+
+        private String email;
+
+        private String phone;
+
+        private String comment;
+
+        @Override
+        void reset() {
+            super.reset();
+            this.id = 1;
+            this.name = "name";
+            this.firstName = "";
+            this.email = "someone@example.com";
+            this.phone = "   ";
+            this.comment = "a rather long comment that trim() would have to scan  ";
+        }
+    }
+
+}
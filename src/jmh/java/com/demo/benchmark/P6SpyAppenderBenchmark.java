@@ -0,0 +1,113 @@
+package com.demo.benchmark;
+
+import com.demo.conf.p6spy.AsyncFileLogger;
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latence des opérations du DAO sur l'unité p6spy selon l'appender : slf4j
+ * (celui de spy.properties), fichier synchrone de p6spy, ou
+ * {@link AsyncFileLogger}. Les logs vont dans target/ ; mode SampleTime pour
+ * les percentiles.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class P6SpyAppenderBenchmark {
+
+    private static final int TABLE_SIZE = 1000;
+
+    @Param({"com.p6spy.engine.spy.appender.Slf4JLogger", "com.p6spy.engine.spy.appender.FileLogger",
+            "com.demo.conf.p6spy.AsyncFileLogger"})
+    private String appender;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PersonDaoImpl personDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // lu par p6spy au chargement de son driver : avant la factory
+        System.setProperty("p6spy.config.appender", this.appender);
+        System.setProperty("p6spy.config.logfile", "target/p6spy-appender-benchmark.log");
+        System.setProperty("p6spy.config.append", "false");
+        if (System.getProperty("org.slf4j.simpleLogger.logFile") == null) {
+            System.setProperty("org.slf4j.simpleLogger.logFile", "target/slf4j-appender-benchmark.log");
+        }
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(
+                BenchmarkPersistence.PERSISTENCE_UNIT_P6SPY);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManager(this.entityManager);
+
+        final List<Person> persons = new ArrayList<>(TABLE_SIZE);
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(persons);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+        final AsyncFileLogger async = AsyncFileLogger.getActiveInstance();
+        if (async != null) {
+            async.close();
+            System.out.println("AsyncFileLogger written=" + async.getWritten() + " dropped=" + async.getDropped());
+        }
+    }
+
+    @Benchmark
+    public Person create() {
+        final Person person = new Person();
+        person.setName("created");
+        this.entityManager.getTransaction().begin();
+        this.personDao.create(person);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+        return person;
+    }
+
+    @Benchmark
+    public List<Person> findAllByAttributes() {
+        final Map<String, Object> attributes = Collections.singletonMap("name",
+                "person-" + ThreadLocalRandom.current().nextInt(TABLE_SIZE));
+        final List<Person> persons = this.personDao.findAllByAttributes(attributes);
+        this.entityManager.clear();
+        return persons;
+    }
+
+}
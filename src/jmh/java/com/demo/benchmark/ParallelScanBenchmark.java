@@ -0,0 +1,94 @@
+package com.demo.benchmark;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.dao.impl.ParallelTableScan;
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import com.demo.entities.Person_;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parcours de toute la table (100 000 lignes) avec 1, 2, 4 et 8 threads,
+ * contre un readAll() sur un seul thread. Chaque ligne subit un petit calcul
+ * (hash du nom).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelScanBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    @Param({"1", "2", "4", "8"})
+    private int workers;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private ThreadLocalEntityManagerProvider entityManagerProvider;
+
+    private PersonDaoImpl personDao;
+
+    private ParallelTableScan<Person, Integer> scan;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManagerProvider = new ThreadLocalEntityManagerProvider(this.entityManagerFactory);
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManagerProvider(this.entityManagerProvider);
+
+        final List<Person> persons = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        this.entityManagerProvider.inTransaction(entityManager -> {
+            this.personDao.createAll(persons);
+            return null;
+        });
+        this.entityManagerProvider.release();
+        this.scan = new ParallelTableScan<>(this.personDao, this.entityManagerProvider, Person_.id, this.workers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public long readAll() {
+        long hash = 0;
+        for (final Person person : this.personDao.readAll()) {
+            hash += person.getName().hashCode();
+        }
+        this.entityManagerProvider.release();
+        return hash;
+    }
+
+    @Benchmark
+    public long parallelScan() {
+        return this.scan.scan(persons -> persons.mapToLong(person -> person.getName().hashCode()).sum(), Long::sum);
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.demo.benchmark;
+
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import com.demo.entities.Person_;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Tuple;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture de toute la table en entités, en tuples et en DTO. Lancer avec
+ * <code>-prof gc</code> pour comparer aussi la mémoire allouée par appel
+ * (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProjectionBenchmark {
+
+    private static final Map<String, Object> ALL = Collections.emptyMap();
+
+    @Param({"100", "1000", "10000"})
+    private int tableSize;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PersonDaoImpl personDao;
+
+    /**
+     * colonnes lues, le metamodel n'est renseigné qu'à la création de la factory.
+     */
+    private List<SingularAttribute<? super Person, ?>> idAndName;
+
+    /**
+     * DTO de listing.
+     */
+    public static class PersonName {
+
+        private final int id;
+
+        private final String name;
+
+        public PersonName(final int id, final String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return this.id;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.idAndName = Arrays.asList(Person_.id, Person_.name);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManager(this.entityManager);
+
+        final List<Person> persons = new ArrayList<>(this.tableSize);
+        for (int i = 0; i < this.tableSize; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(persons);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<Person> entities() {
+        final List<Person> persons = this.personDao.findAllByAttributes(ALL);
+        this.entityManager.clear();
+        return persons;
+    }
+
+    @Benchmark
+    public List<Tuple> tuples() {
+        final List<Tuple> tuples = this.personDao.findTuplesByAttributes(ALL, this.idAndName);
+        this.entityManager.clear();
+        return tuples;
+    }
+
+    @Benchmark
+    public List<PersonName> dtos() {
+        final List<PersonName> names = this.personDao.findDtosByAttributes(ALL, PersonName.class, this.idAndName);
+        this.entityManager.clear();
+        return names;
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.demo.benchmark;
+
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chargement de toute la table puis flush, avec un DAO normal ou en lecture
+ * seule. <code>load</code> mesure la lecture (lancer avec <code>-prof gc</code>
+ * pour la mémoire allouée), <code>flush</code> mesure seulement le flush d'un
+ * contexte de persistance déjà rempli.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadOnlyBenchmark {
+
+    @Param({"1000", "10000"})
+    private int tableSize;
+
+    @Param({"false", "true"})
+    private boolean readOnly;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PersonDaoImpl personDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManager(this.entityManager);
+
+        final List<Person> persons = new ArrayList<>(this.tableSize);
+        for (int i = 0; i < this.tableSize; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(persons);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+        this.personDao.setReadOnly(this.readOnly);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public List<Person> load() {
+        final List<Person> persons = this.personDao.readAll();
+        this.entityManager.clear();
+        return persons;
+    }
+
+    /**
+     * Contexte de persistance rempli avant chaque flush mesuré.
+     */
+    @State(Scope.Thread)
+    public static class Loaded {
+
+        private EntityManager entityManager;
+
+        @Setup(Level.Invocation)
+        public void load(final ReadOnlyBenchmark benchmark) {
+            this.entityManager = benchmark.entityManager;
+            this.entityManager.getTransaction().begin();
+            benchmark.personDao.readAll();
+        }
+
+        @TearDown(Level.Invocation)
+        public void clear() {
+            this.entityManager.getTransaction().rollback();
+            this.entityManager.clear();
+        }
+    }
+
+    @Benchmark
+    public void flush(final Loaded loaded) {
+        loaded.entityManager.flush();
+    }
+
+}
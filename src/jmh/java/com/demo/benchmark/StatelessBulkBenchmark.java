@@ -0,0 +1,158 @@
+package com.demo.benchmark;
+
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.dao.impl.StatelessBulkDaoImpl;
+import com.demo.entities.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Chemin avec état (DAO générique, contexte de persistance) contre chemin sans
+ * état (<code>StatelessSession</code>) sur {@link #ROWS} personnes, en batch de
+ * 50 dans les deux cas : insertion, mise à jour d'entités détachées et
+ * parcours de toute la table. Le score est exprimé en lignes par seconde.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatelessBulkBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    private PersonDaoImpl personDao;
+
+    private StatelessBulkDaoImpl<Person, Integer> bulkDao;
+
+    /**
+     * personnes présentes en base pendant l'itération, détachées.
+     */
+    private List<Person> loaded;
+
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManager = this.entityManagerFactory.createEntityManager();
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManager(this.entityManager);
+        this.bulkDao = new StatelessBulkDaoImpl<>(Person.class, this.entityManagerFactory);
+    }
+
+    @Setup(Level.Iteration)
+    public void load() {
+        this.loaded = newPersons();
+        this.bulkDao.insertAll(this.loaded);
+    }
+
+    @TearDown(Level.Iteration)
+    public void purge() {
+        this.entityManager.getTransaction().begin();
+        this.personDao.deleteAll();
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.entityManager.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertStateful() {
+        this.entityManager.getTransaction().begin();
+        this.personDao.createAll(newPersons());
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int insertStateless() {
+        return this.bulkDao.insertAll(newPersons());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void updateStateful() {
+        this.rename();
+        this.entityManager.getTransaction().begin();
+        this.personDao.updateAll(this.loaded);
+        this.entityManager.getTransaction().commit();
+        this.entityManager.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int updateStateless() {
+        this.rename();
+        return this.bulkDao.updateAll(this.loaded);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void scrollStateful(final Blackhole blackhole) {
+        try (Stream<Person> persons = this.personDao.streamAll()) {
+            persons.forEach(blackhole::consume);
+        }
+        this.entityManager.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void scrollStateless(final Blackhole blackhole) {
+        try (Stream<Person> persons = this.bulkDao.scroll()) {
+            persons.forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * change le nom de toutes les personnes chargées, pour que chaque mise à
+     * jour écrive vraiment.
+     */
+    private void rename() {
+        final String suffix = "-" + this.round++;
+        for (final Person person : this.loaded) {
+            person.setName("person-" + person.getId() + suffix);
+        }
+    }
+
+    private static List<Person> newPersons() {
+        final List<Person> persons = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            final Person person = new Person();
+            person.setName("person-" + i);
+            persons.add(person);
+        }
+        return persons;
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.demo.benchmark;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.dao.impl.WriteBehindBuffer;
+import com.demo.entities.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rafales de créations depuis 8 threads : une transaction par create()
+ * contre le regroupement par {@link WriteBehindBuffer}. Le score est en
+ * lignes créées par milliseconde.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class WriteBehindBenchmark {
+
+    /**
+     * créations par rafale.
+     */
+    private static final int BURST = 100;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private ThreadLocalEntityManagerProvider entityManagerProvider;
+
+    private PersonDaoImpl personDao;
+
+    private WriteBehindBuffer<Person, Integer> buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.entityManagerFactory = BenchmarkPersistence.createEntityManagerFactory(BenchmarkPersistence.PERSISTENCE_UNIT);
+        this.entityManagerProvider = new ThreadLocalEntityManagerProvider(this.entityManagerFactory);
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManagerProvider(this.entityManagerProvider);
+        this.buffer = new WriteBehindBuffer<>(this.personDao, this.entityManagerProvider);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.buffer.close();
+        this.entityManagerFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void perCallCommit() {
+        for (int i = 0; i < BURST; i++) {
+            final Person person = new Person();
+            person.setName("per-call");
+            this.entityManagerProvider.inTransaction(entityManager -> {
+                this.personDao.create(person);
+                return null;
+            });
+            this.entityManagerProvider.getEntityManager().clear();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void writeBehind() {
+        final CompletableFuture<?>[] ids = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            final Person person = new Person();
+            person.setName("write-behind");
+            ids[i] = this.buffer.create(person);
+        }
+        CompletableFuture.allOf(ids).join();
+    }
+
+}
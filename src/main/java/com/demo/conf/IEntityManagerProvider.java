@@ -0,0 +1,29 @@
+package com.demo.conf;
+
+import javax.persistence.EntityManager;
+
+/**
+ * <code>IEntityManagerProvider</code> fournit aux DAO l'entity manager à
+ * utiliser pour l'appel en cours.
+ */
+@FunctionalInterface
+public interface IEntityManagerProvider {
+
+    /**
+     * retourne l'entity manager de l'appel en cours.
+     *
+     * @return <code>EntityManager</code>
+     */
+    EntityManager getEntityManager();
+
+    /**
+     * retourne l'entity manager des lectures, par défaut le même que celui
+     * des écritures.
+     *
+     * @return <code>EntityManager</code>
+     */
+    default EntityManager getReadEntityManager() {
+        return this.getEntityManager();
+    }
+
+}
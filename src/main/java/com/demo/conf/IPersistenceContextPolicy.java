@@ -0,0 +1,29 @@
+package com.demo.conf;
+
+import javax.persistence.EntityManager;
+
+/**
+ * <code>IPersistenceContextPolicy</code> décide quoi faire quand le contexte
+ * de persistance dépasse la taille autorisée par le garde.
+ */
+@FunctionalInterface
+public interface IPersistenceContextPolicy {
+
+    /**
+     * politique par défaut : envoie les modifications en attente puis détache
+     * toutes les entités.
+     */
+    IPersistenceContextPolicy FLUSH_AND_CLEAR = (entityManager, managedEntities) -> {
+        entityManager.flush();
+        entityManager.clear();
+    };
+
+    /**
+     * appelée quand le contexte de persistance dépasse le seuil.
+     *
+     * @param entityManager   l'entity manager dont le contexte est trop gros
+     * @param managedEntities le nombre d'entités gérées
+     */
+    void onThresholdExceeded(EntityManager entityManager, int managedEntities);
+
+}
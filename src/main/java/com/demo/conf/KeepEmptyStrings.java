@@ -0,0 +1,20 @@
+package com.demo.conf;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <code>KeepEmptyStrings</code> désactive, pour l'entité annotée et ses
+ * sous-classes, la conversion des chaînes vides en null faite par les DAO à la
+ * création et à la mise à jour.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface KeepEmptyStrings {
+}
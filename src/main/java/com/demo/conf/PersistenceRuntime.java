@@ -0,0 +1,83 @@
+package com.demo.conf;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <code>PersistenceRuntime</code> crée une seule fois, de façon thread-safe,
+ * l'EntityManagerFactory de chaque unité de persistance.
+ */
+public final class PersistenceRuntime {
+
+    /**
+     * propriété d'une unité de persistance donnant le nom de son réplica en
+     * lecture seule.
+     */
+    public static final String REPLICA_UNIT_PROPERTY = "com.demo.persistence.replica_unit";
+
+    /**
+     * les factories, par nom d'unité de persistance.
+     */
+    private static final ConcurrentMap<String, EntityManagerFactory> FACTORIES = new ConcurrentHashMap<>();
+
+    private PersistenceRuntime() {
+    }
+
+    /**
+     * retourne la factory de l'unité de persistance, créée au premier appel.
+     *
+     * @param persistenceUnit nom de l'unité de persistance
+     * @return <code>EntityManagerFactory</code>
+     */
+    public static EntityManagerFactory getEntityManagerFactory(final String persistenceUnit) {
+        final EntityManagerFactory factory = FACTORIES.get(persistenceUnit);
+        if (factory != null && factory.isOpen()) {
+            return factory;
+        }
+        return FACTORIES.compute(persistenceUnit, (name, existing) -> existing != null && existing.isOpen()
+                ? existing : Persistence.createEntityManagerFactory(name));
+    }
+
+    /**
+     * retourne un provider d'entity manager par thread pour l'unité de
+     * persistance. Si l'unité déclare un réplica (propriété
+     * {@value #REPLICA_UNIT_PROPERTY} dans persistence.xml), les lectures sont
+     * routées vers lui.
+     *
+     * @param persistenceUnit nom de l'unité de persistance primaire
+     * @return <code>ThreadLocalEntityManagerProvider</code>
+     */
+    public static ThreadLocalEntityManagerProvider createEntityManagerProvider(final String persistenceUnit) {
+        final EntityManagerFactory primary = getEntityManagerFactory(persistenceUnit);
+        final Object replicaUnit = primary.getProperties().get(REPLICA_UNIT_PROPERTY);
+        if (replicaUnit == null || replicaUnit.toString().trim().isEmpty()) {
+            return new ThreadLocalEntityManagerProvider(primary);
+        }
+        return new ReplicaRoutingEntityManagerProvider(primary,
+                getEntityManagerFactory(replicaUnit.toString().trim()));
+    }
+
+    /**
+     * ferme la factory de l'unité de persistance.
+     *
+     * @param persistenceUnit nom de l'unité de persistance
+     */
+    public static void close(final String persistenceUnit) {
+        final EntityManagerFactory factory = FACTORIES.remove(persistenceUnit);
+        if (factory != null && factory.isOpen()) {
+            factory.close();
+        }
+    }
+
+    /**
+     * ferme toutes les factories.
+     */
+    public static void closeAll() {
+        for (final String persistenceUnit : FACTORIES.keySet()) {
+            close(persistenceUnit);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.demo.conf;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * <code>ReplicaRoutingEntityManagerProvider</code> envoie les écritures à
+ * l'unité de persistance primaire et les lectures à un réplica en lecture
+ * seule, chaque thread ayant son entity manager sur chacune.
+ * <p>
+ * Lecture de ses propres écritures : tant qu'une transaction est active sur
+ * l'entity manager primaire du thread, les lectures restent sur le primaire.
+ * En dehors d'une transaction, une lecture peut ne pas voir une écriture pas
+ * encore répliquée.
+ * <p>
+ * Les entités lues sur le réplica sont en lecture seule et sa session n'est
+ * jamais flushée : pour modifier une entité, la relire dans une transaction
+ * ou passer par update.
+ * <p>
+ * L'unité du réplica ne doit pas avoir de cache de second niveau : les
+ * écritures sur le primaire n'invalident que les régions du primaire, et
+ * celles du réplica serviraient des entités périmées jusqu'à leur TTL.
+ */
+public class ReplicaRoutingEntityManagerProvider extends ThreadLocalEntityManagerProvider {
+
+    /**
+     * les entity managers du réplica.
+     */
+    private final ThreadLocalEntityManagerProvider replica;
+
+    /**
+     * Constructeur.
+     *
+     * @param primaryEntityManagerFactory la factory de l'unité primaire
+     * @param replicaEntityManagerFactory la factory du réplica
+     */
+    public ReplicaRoutingEntityManagerProvider(final EntityManagerFactory primaryEntityManagerFactory,
+                                               final EntityManagerFactory replicaEntityManagerFactory) {
+        super(primaryEntityManagerFactory);
+        this.replica = new ThreadLocalEntityManagerProvider(replicaEntityManagerFactory);
+    }
+
+    @Override
+    public EntityManager getReadEntityManager() {
+        final EntityManager primary = this.getCurrentEntityManager();
+        if (primary != null && primary.getTransaction().isActive()) {
+            return primary;
+        }
+        final EntityManager replicaEntityManager = this.replica.getCurrentEntityManager();
+        if (replicaEntityManager != null) {
+            return replicaEntityManager;
+        }
+        final EntityManager opened = this.replica.getEntityManager();
+        final Session session = opened.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        return opened;
+    }
+
+    /**
+     * ferme les entity managers primaire et réplica du thread courant.
+     */
+    @Override
+    public void release() {
+        try {
+            super.release();
+        } finally {
+            this.replica.release();
+        }
+    }
+
+    /**
+     * @return la factory du réplica
+     */
+    public EntityManagerFactory getReplicaEntityManagerFactory() {
+        return this.replica.getEntityManagerFactory();
+    }
+
+}
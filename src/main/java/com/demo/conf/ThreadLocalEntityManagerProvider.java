@@ -0,0 +1,108 @@
+package com.demo.conf;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.function.Function;
+
+/**
+ * <code>ThreadLocalEntityManagerProvider</code> donne à chaque thread son
+ * propre entity manager, ouvert à la première demande et fermé par
+ * {@link #release()}. Un même DAO peut ainsi servir plusieurs threads en
+ * parallèle.
+ */
+public class ThreadLocalEntityManagerProvider implements IEntityManagerProvider {
+
+    /**
+     * la factory.
+     */
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * l'entity manager de chaque thread.
+     */
+    private final ThreadLocal<EntityManager> entityManagers = new ThreadLocal<>();
+
+    /**
+     * Constructeur.
+     *
+     * @param entityManagerFactory la factory
+     */
+    public ThreadLocalEntityManagerProvider(final EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public EntityManager getEntityManager() {
+        EntityManager entityManager = this.entityManagers.get();
+        if (entityManager == null || !entityManager.isOpen()) {
+            entityManager = this.entityManagerFactory.createEntityManager();
+            this.entityManagers.set(entityManager);
+        }
+        return entityManager;
+    }
+
+    /**
+     * retourne l'entity manager du thread courant sans en ouvrir un.
+     *
+     * @return l'entity manager ouvert du thread courant, null s'il n'y en a pas
+     */
+    public EntityManager getCurrentEntityManager() {
+        final EntityManager entityManager = this.entityManagers.get();
+        return entityManager != null && entityManager.isOpen() ? entityManager : null;
+    }
+
+    /**
+     * exécute le travail dans une transaction de l'entity manager du thread
+     * courant : la transaction en cours est rejointe s'il y en a une, sinon une
+     * transaction est ouverte, validée à la fin ou annulée en cas d'exception.
+     *
+     * @param <T>  le type du résultat
+     * @param work le travail
+     * @return le résultat du travail
+     */
+    public <T> T inTransaction(final Function<EntityManager, T> work) {
+        final EntityManager entityManager = this.getEntityManager();
+        final EntityTransaction transaction = entityManager.getTransaction();
+        if (transaction.isActive()) {
+            return work.apply(entityManager);
+        }
+        transaction.begin();
+        try {
+            final T result = work.apply(entityManager);
+            transaction.commit();
+            return result;
+        } catch (final RuntimeException | Error e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * ferme l'entity manager du thread courant (la transaction éventuellement
+     * en cours est annulée).
+     */
+    public void release() {
+        final EntityManager entityManager = this.entityManagers.get();
+        this.entityManagers.remove();
+        if (entityManager != null && entityManager.isOpen()) {
+            try {
+                if (entityManager.getTransaction().isActive()) {
+                    entityManager.getTransaction().rollback();
+                }
+            } finally {
+                entityManager.close();
+            }
+        }
+    }
+
+    /**
+     * @return la factory
+     */
+    public EntityManagerFactory getEntityManagerFactory() {
+        return this.entityManagerFactory;
+    }
+
+}
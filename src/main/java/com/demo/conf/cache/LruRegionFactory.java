@@ -0,0 +1,113 @@
+package com.demo.conf.cache;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fabrique de régions de cache hibernate (second niveau et cache de requêtes)
+ * entièrement en mémoire, sans service externe. Chaque région est bornée, avec
+ * éviction LRU et TTL, configurés dans le persistence.xml :
+ * <ul>
+ * <li><code>com.demo.cache.max_entries</code> / <code>com.demo.cache.ttl_seconds</code> : valeurs par défaut</li>
+ * <li><code>com.demo.cache.region.&lt;region&gt;.max_entries</code> /
+ * <code>com.demo.cache.region.&lt;region&gt;.ttl_seconds</code> : valeurs d'une région</li>
+ * </ul>
+ * La région des timestamps n'est jamais bornée : perdre un timestamp rendrait
+ * des résultats de requêtes périmés valides.
+ */
+public class LruRegionFactory extends RegionFactoryTemplate {
+
+    /**
+     * préfixe des propriétés.
+     */
+    public static final String PROP_PREFIX = "com.demo.cache.";
+
+    /**
+     * nombre maximum d'entrées par défaut.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * TTL par défaut en secondes.
+     */
+    public static final long DEFAULT_TTL_SECONDS = 600;
+
+    private static final long serialVersionUID = 20180623L;
+
+    /**
+     * configuration de la session factory.
+     */
+    private transient Map<?, ?> configValues;
+
+    /**
+     * les régions créées, par nom.
+     */
+    private final ConcurrentMap<String, LruStorageAccess> regions = new ConcurrentHashMap<>();
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    protected void prepareForUse(final SessionFactoryOptions settings, final Map configValues) {
+        this.configValues = configValues;
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        this.regions.values().forEach(LruStorageAccess::release);
+        this.regions.clear();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(final DomainDataRegionConfig regionConfig,
+                                                                    final DomainDataRegionBuildingContext buildingContext) {
+        return this.createBoundedRegion(regionConfig.getRegionName());
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(final String regionName,
+                                                                  final SessionFactoryImplementor sessionFactory) {
+        return this.createBoundedRegion(regionName);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(final String regionName,
+                                                                final SessionFactoryImplementor sessionFactory) {
+        return this.register(new LruStorageAccess(regionName, Integer.MAX_VALUE, 0));
+    }
+
+    /**
+     * @param regionName nom de la région
+     * @return la région, ou null si elle n'a pas (encore) été créée
+     */
+    public LruStorageAccess getRegion(final String regionName) {
+        return this.regions.get(regionName);
+    }
+
+    private LruStorageAccess createBoundedRegion(final String regionName) {
+        final int maxEntries = (int) this.getLong(regionName, "max_entries", DEFAULT_MAX_ENTRIES);
+        final long ttlSeconds = this.getLong(regionName, "ttl_seconds", DEFAULT_TTL_SECONDS);
+        return this.register(new LruStorageAccess(regionName, maxEntries, ttlSeconds * 1000));
+    }
+
+    private LruStorageAccess register(final LruStorageAccess storage) {
+        this.regions.put(storage.getRegionName(), storage);
+        return storage;
+    }
+
+    private long getLong(final String regionName, final String key, final long defaultValue) {
+        Object value = this.configValues.get(PROP_PREFIX + "region." + regionName + "." + key);
+        if (value == null) {
+            value = this.configValues.get(PROP_PREFIX + key);
+        }
+        return value == null ? defaultValue : Long.parseLong(value.toString().trim());
+    }
+
+}
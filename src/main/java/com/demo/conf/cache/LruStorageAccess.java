@@ -0,0 +1,125 @@
+package com.demo.conf.cache;
+
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stockage en mémoire d'une région de cache : taille bornée avec éviction LRU
+ * et expiration des entrées après un TTL.
+ */
+public class LruStorageAccess implements DomainDataStorageAccess {
+
+    /**
+     * nom de la région.
+     */
+    private final String regionName;
+
+    /**
+     * durée de vie d'une entrée en millisecondes, 0 pour ne jamais expirer.
+     */
+    private final long ttlMillis;
+
+    /**
+     * les entrées, dans l'ordre d'accès (la plus ancienne en tête).
+     */
+    private final LinkedHashMap<Object, Entry> entries;
+
+    /**
+     * Constructeur.
+     *
+     * @param regionName nom de la région
+     * @param maxEntries nombre maximum d'entrées
+     * @param ttlMillis  durée de vie d'une entrée en millisecondes, 0 pour ne jamais expirer
+     */
+    public LruStorageAccess(final String regionName, final int maxEntries, final long ttlMillis) {
+        this.regionName = regionName;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 20180623L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Object, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Object getFromCache(final Object key, final SharedSessionContractImplementor session) {
+        final Entry entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            this.entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public synchronized void putIntoCache(final Object key, final Object value,
+                                         final SharedSessionContractImplementor session) {
+        final long expiresAt = this.ttlMillis > 0 ? System.currentTimeMillis() + this.ttlMillis : Long.MAX_VALUE;
+        this.entries.put(key, new Entry(value, expiresAt));
+    }
+
+    @Override
+    public synchronized boolean contains(final Object key) {
+        final Entry entry = this.entries.get(key);
+        return entry != null && !entry.isExpired(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized void evictData() {
+        this.entries.clear();
+    }
+
+    @Override
+    public synchronized void evictData(final Object key) {
+        this.entries.remove(key);
+    }
+
+    @Override
+    public void release() {
+        this.evictData();
+    }
+
+    /**
+     * @return le nombre d'entrées, expirées comprises
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return le nom de la région
+     */
+    public String getRegionName() {
+        return this.regionName;
+    }
+
+    /**
+     * valeur en cache et date d'expiration.
+     */
+    private static final class Entry {
+
+        private final Object value;
+
+        private final long expiresAt;
+
+        Entry(final Object value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(final long now) {
+            return now >= this.expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.demo.conf.exception;
+
+/**
+ * StatementBudgetException : le nombre de requêtes SQL d'une unité de
+ * travail ne respecte pas le budget attendu.
+ */
+public class StatementBudgetException extends RuntimeException {
+
+    /**
+     * serial uid.
+     */
+    private static final long serialVersionUID = 20180623L;
+
+    /**
+     * default exception.
+     */
+    public StatementBudgetException() {
+    }
+
+    /**
+     * constructeur.
+     *
+     * @param message message
+     */
+    public StatementBudgetException(final String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.demo.conf.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences sans verrou, en nanosecondes. Les buckets sont
+ * log-linéaires : 8 buckets par puissance de 2, soit une erreur relative
+ * d'au plus 12,5 % sur les percentiles. L'enregistrement ne fait qu'un
+ * incrément atomique et n'alloue rien.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * nombre de bits de sous-bucket par puissance de 2.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * nombre de sous-buckets par puissance de 2.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * nombre de buckets pour couvrir toutes les valeurs positives d'un long.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder total = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    /**
+     * enregistre une latence.
+     *
+     * @param nanos la latence en nanosecondes
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(nanos, 0);
+        this.buckets.incrementAndGet(indexOf(value));
+        this.count.increment();
+        this.total.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * @return une photo de l'histogramme
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return new Snapshot(counts, this.count.sum(), this.total.sum(), this.max.get());
+    }
+
+    /**
+     * remet l'histogramme à zéro (non atomique vis-à-vis des enregistrements
+     * concurrents).
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.reset();
+        this.total.reset();
+        this.max.reset();
+    }
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    /**
+     * photo immuable d'un histogramme.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long total;
+
+        private final long max;
+
+        Snapshot(final long[] counts, final long count, final long total, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * @return le nombre de valeurs
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return la somme des valeurs en nanosecondes
+         */
+        public long getTotalNanos() {
+            return this.total;
+        }
+
+        /**
+         * @return la moyenne en nanosecondes
+         */
+        public long getMeanNanos() {
+            return this.count == 0 ? 0 : this.total / this.count;
+        }
+
+        /**
+         * @return la valeur maximum en nanosecondes
+         */
+        public long getMaxNanos() {
+            return this.max;
+        }
+
+        /**
+         * @param percentile le percentile, entre 0 et 100
+         * @return la borne haute du bucket contenant le percentile, en
+         * nanosecondes, plafonnée au maximum observé
+         */
+        public long getPercentileNanos(final double percentile) {
+            long observed = 0;
+            for (final long c : this.counts) {
+                observed += c;
+            }
+            if (observed == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * observed));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), this.max);
+                }
+            }
+            return this.max;
+        }
+    }
+
+}
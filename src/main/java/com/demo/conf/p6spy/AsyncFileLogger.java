@@ -0,0 +1,546 @@
+package com.demo.conf.p6spy;
+
+import com.p6spy.engine.logging.Category;
+import com.p6spy.engine.spy.P6SpyOptions;
+import com.p6spy.engine.spy.appender.FormattedLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appender p6spy asynchrone : le thread JDBC ne fait que déposer l'événement
+ * dans une {@link RingBuffer} sans verrou. Un thread d'écriture vide la file,
+ * formate les messages avec la stratégie p6spy (<code>logMessageFormat</code>)
+ * et les écrit par lots via un <code>FileChannel</code>, avec rotation du
+ * fichier à partir d'une taille donnée.
+ * <p>
+ * À utiliser dans spy.properties :
+ * <code>appender=com.demo.conf.p6spy.AsyncFileLogger</code>. Le fichier est le
+ * <code>logfile</code> de p6spy (<code>append</code> est respecté), le reste
+ * se règle par propriétés système :
+ * <ul>
+ * <li><code>com.demo.p6spy.async.capacity</code> : taille de la file (8192) ;</li>
+ * <li><code>com.demo.p6spy.async.batch</code> : événements par écriture (512) ;</li>
+ * <li><code>com.demo.p6spy.async.max_file_size</code> : taille du fichier avant
+ * rotation en octets, 0 pour ne jamais tourner (10 Mo) ;</li>
+ * <li><code>com.demo.p6spy.async.max_files</code> : nombre de fichiers tournés
+ * gardés, <code>spy.log.1</code> étant le plus récent (5) ;</li>
+ * <li><code>com.demo.p6spy.async.policy</code> : quand la file est pleine,
+ * <code>DROP</code> perd l'événement (compté), <code>BLOCK</code> fait attendre
+ * le thread JDBC (DROP).</li>
+ * </ul>
+ * Le fichier et le thread d'écriture sont ouverts au premier événement : p6spy
+ * crée l'appender pendant le chargement de ses options, avant qu'elles ne
+ * soient lisibles. La file est vidée à l'arrêt de la JVM.
+ * <p>
+ * Une erreur d'entrée / sortie ou de formatage ne remonte jamais au thread
+ * JDBC : elle est comptée dans {@link #getFailures()} et seule la première est
+ * journalisée (slf4j, pas p6spy) pour ne pas inonder la console si le disque
+ * est plein. Un lot non écrit ou un événement que la stratégie ne sait pas
+ * formater est compté comme perdu ; une rotation ratée laisse les lots dans le
+ * fichier courant. Si le fichier ne s'ouvre pas au démarrage, l'appender reste
+ * fermé et tous les événements sont comptés comme perdus.
+ */
+public class AsyncFileLogger extends FormattedLogger {
+
+    /**
+     * préfixe des propriétés système.
+     */
+    public static final String PROPERTY_PREFIX = "com.demo.p6spy.async.";
+
+    /**
+     * Conduite à tenir quand la file est pleine.
+     */
+    public enum OverflowPolicy {
+        /**
+         * l'événement est perdu et compté.
+         */
+        DROP,
+        /**
+         * le thread JDBC attend une place.
+         */
+        BLOCK
+    }
+
+    /**
+     * attente du thread d'écriture quand la file est vide.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * attente d'un producteur bloqué avant de réessayer.
+     */
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncFileLogger.class.getName());
+
+    /**
+     * dernière instance démarrée (par p6spy), pour lire ses compteurs.
+     */
+    private static volatile AsyncFileLogger activeInstance;
+
+    private final RingBuffer<Event> buffer;
+
+    private final int batchSize;
+
+    private final long maxFileSize;
+
+    private final int maxFiles;
+
+    private final OverflowPolicy policy;
+
+    /**
+     * le fichier de log, null pour prendre le logfile de p6spy au démarrage.
+     */
+    private Path file;
+
+    /**
+     * false pour vider le fichier à l'ouverture, null pour l'option append de p6spy.
+     */
+    private final Boolean append;
+
+    private Thread writer;
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder blocked = new LongAdder();
+
+    private final LongAdder rotations = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private FileChannel channel;
+
+    private volatile boolean started;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructeur appelé par p6spy, réglé par les propriétés système.
+     */
+    public AsyncFileLogger() {
+        this(null,
+                Integer.getInteger(PROPERTY_PREFIX + "capacity", 8192),
+                Integer.getInteger(PROPERTY_PREFIX + "batch", 512),
+                Long.getLong(PROPERTY_PREFIX + "max_file_size", 10L * 1024 * 1024),
+                Integer.getInteger(PROPERTY_PREFIX + "max_files", 5),
+                OverflowPolicy.valueOf(System.getProperty(PROPERTY_PREFIX + "policy", OverflowPolicy.DROP.name())
+                        .toUpperCase(Locale.ROOT)),
+                null);
+    }
+
+    /**
+     * Constructeur.
+     *
+     * @param file        le fichier de log, null pour le logfile de p6spy
+     * @param capacity    la taille de la file
+     * @param batchSize   le nombre maximal d'événements par écriture
+     * @param maxFileSize la taille du fichier avant rotation, 0 pour ne jamais tourner
+     * @param maxFiles    le nombre de fichiers tournés gardés
+     * @param policy      la conduite quand la file est pleine
+     * @param append      false pour vider le fichier à l'ouverture, null pour l'option append de p6spy
+     */
+    public AsyncFileLogger(final Path file, final int capacity, final int batchSize, final long maxFileSize,
+                           final int maxFiles, final OverflowPolicy policy, final Boolean append) {
+        if (batchSize <= 0 || maxFileSize < 0 || maxFiles < 0) {
+            throw new IllegalArgumentException("batch, taille de fichier ou nombre de fichiers invalide");
+        }
+        this.buffer = new RingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.policy = policy;
+        this.file = file;
+        this.append = append;
+    }
+
+    /**
+     * ouvre le fichier et démarre le thread d'écriture, une seule fois.
+     */
+    private synchronized void start() {
+        if (this.started) {
+            return;
+        }
+        if (this.file == null) {
+            this.file = Paths.get(logfile());
+        }
+        try {
+            this.channel = open(this.file,
+                    this.append != null ? this.append : P6SpyOptions.getActiveInstance().getAppend());
+        } catch (final IOException ex) {
+            // pas de nouvel essai à chaque requête : l'appender reste fermé
+            this.failed(ex);
+            this.closed = true;
+            this.started = true;
+            activeInstance = this;
+            return;
+        }
+        this.writer = new Thread(this::drainLoop, "p6spy-async-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "p6spy-async-shutdown"));
+        this.started = true;
+        activeInstance = this;
+    }
+
+    /**
+     * @return le fichier de log de p6spy, spy.log par défaut
+     */
+    private static String logfile() {
+        final String logfile = P6SpyOptions.getActiveInstance().getLogfile();
+        return logfile == null || logfile.isEmpty() ? "spy.log" : logfile;
+    }
+
+    /**
+     * @return la dernière instance démarrée, null si p6spy n'a encore rien écrit avec cet appender
+     */
+    public static AsyncFileLogger getActiveInstance() {
+        return activeInstance;
+    }
+
+    @Override
+    public void logSQL(final int connectionId, final String now, final long elapsed, final Category category,
+                       final String prepared, final String sql) {
+        this.enqueue(new Event(connectionId, now, elapsed, category, prepared, sql, null));
+    }
+
+    @Override
+    public void logText(final String text) {
+        this.enqueue(new Event(0, null, 0, null, null, null, text));
+    }
+
+    @Override
+    public void logException(final Exception e) {
+        final StringWriter trace = new StringWriter();
+        e.printStackTrace(new PrintWriter(trace));
+        this.logText(trace.toString());
+    }
+
+    @Override
+    public boolean isCategoryEnabled(final Category category) {
+        return true;
+    }
+
+    /**
+     * dépose l'événement dans la file selon la politique de débordement.
+     *
+     * @param event l'événement
+     */
+    private void enqueue(final Event event) {
+        if (!this.started) {
+            this.start();
+        }
+        if (this.closed) {
+            this.dropped.increment();
+            return;
+        }
+        if (this.buffer.offer(event)) {
+            return;
+        }
+        if (this.policy == OverflowPolicy.DROP) {
+            this.dropped.increment();
+            return;
+        }
+        this.blocked.increment();
+        LockSupport.unpark(this.writer);
+        while (!this.buffer.offer(event)) {
+            if (this.closed) {
+                this.dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+        }
+    }
+
+    /**
+     * boucle du thread d'écriture : vide la file par lots jusqu'à la fermeture.
+     */
+    private void drainLoop() {
+        final StringBuilder batch = new StringBuilder(64 * 1024);
+        while (true) {
+            int drained;
+            try {
+                drained = this.drain(batch);
+            } catch (final Throwable ex) {
+                // le thread ne doit pas mourir : les producteurs en BLOCK attendraient sans fin
+                this.failed(ex);
+                drained = 0;
+            }
+            if (drained == 0) {
+                if (this.closed) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * formate et écrit au plus {@link #batchSize} événements.
+     *
+     * @param batch le tampon de formatage, réutilisé
+     * @return le nombre d'événements écrits
+     */
+    private int drain(final StringBuilder batch) {
+        batch.setLength(0);
+        int count = 0;
+        Event event;
+        while (count < this.batchSize && (event = this.buffer.poll()) != null) {
+            final String line;
+            try {
+                line = event.format(this);
+            } catch (final Throwable ex) {
+                // stratégie de formatage en échec : l'événement seul est perdu
+                this.failed(ex);
+                this.dropped.increment();
+                continue;
+            }
+            batch.append(line).append(LINE_SEPARATOR);
+            count++;
+        }
+        if (count > 0) {
+            if (this.write(batch)) {
+                this.written.add(count);
+            } else {
+                this.dropped.add(count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * écrit le lot, après rotation du fichier s'il dépasserait la taille maximale.
+     *
+     * @param batch le lot formaté
+     * @return false si le lot n'a pas pu être écrit
+     */
+    private synchronized boolean write(final CharSequence batch) {
+        final ByteBuffer bytes = StandardCharsets.UTF_8.encode(batch.toString());
+        try {
+            if (!this.channel.isOpen()) {
+                // une rotation ou une écriture précédente a échoué : on reprend le fichier
+                this.channel = open(this.file, true);
+            }
+            if (this.maxFileSize > 0 && this.channel.position() > 0
+                    && this.channel.position() + bytes.remaining() > this.maxFileSize) {
+                try {
+                    this.rotate();
+                } catch (final IOException ex) {
+                    // rotation ratée : le lot va quand même dans le fichier courant
+                    this.failed(ex);
+                }
+            }
+            while (bytes.hasRemaining()) {
+                this.channel.write(bytes);
+            }
+            return true;
+        } catch (final IOException ex) {
+            // le log SQL ne doit pas faire échouer l'application
+            this.failed(ex);
+            return false;
+        }
+    }
+
+    /**
+     * compte l'erreur d'entrée / sortie ou de formatage, journalisée à la
+     * première occurrence.
+     *
+     * @param ex l'erreur
+     */
+    private void failed(final Throwable ex) {
+        this.failures.increment();
+        if (this.failures.sum() == 1) {
+            LOGGER.error("écriture du log p6spy impossible dans " + this.file
+                    + ", erreurs suivantes comptées seulement", ex);
+        } else {
+            LOGGER.debug("écriture du log p6spy impossible dans " + this.file, ex);
+        }
+    }
+
+    /**
+     * décale spy.log.N vers spy.log.N+1 (le plus ancien est supprimé), puis
+     * spy.log vers spy.log.1 et rouvre un fichier vide. Le fichier est rouvert
+     * même si un déplacement échoue : en fin de spy.log s'il est encore là.
+     *
+     * @throws IOException erreur d'entrée / sortie
+     */
+    private void rotate() throws IOException {
+        this.channel.close();
+        try {
+            if (this.maxFiles == 0) {
+                Files.deleteIfExists(this.file);
+            } else {
+                Files.deleteIfExists(this.rotated(this.maxFiles));
+                for (int i = this.maxFiles - 1; i >= 1; i--) {
+                    if (Files.exists(this.rotated(i))) {
+                        Files.move(this.rotated(i), this.rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                Files.move(this.file, this.rotated(1), StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.rotations.increment();
+        } finally {
+            this.channel = open(this.file, true);
+        }
+    }
+
+    /**
+     * @param index le rang du fichier tourné
+     * @return le chemin du fichier tourné
+     */
+    private Path rotated(final int index) {
+        return this.file.resolveSibling(this.file.getFileName() + "." + index);
+    }
+
+    /**
+     * @param file   le fichier
+     * @param append false pour le vider
+     * @return le canal positionné en fin de fichier
+     * @throws IOException erreur d'entrée / sortie
+     */
+    private static FileChannel open(final Path file, final boolean append) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return append
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * arrête d'accepter des événements, écrit ceux en attente et ferme le fichier.
+     */
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        synchronized (this) {
+            if (!this.started || this.writer == null) {
+                return;
+            }
+        }
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (this.channel.isOpen()) {
+                    this.channel.force(false);
+                    this.channel.close();
+                }
+            } catch (final IOException ex) {
+                this.failed(ex);
+            }
+        }
+    }
+
+    /**
+     * @return le nombre d'événements écrits
+     */
+    public long getWritten() {
+        return this.written.sum();
+    }
+
+    /**
+     * @return le nombre d'événements perdus (file pleine, fermeture ou erreur d'écriture)
+     */
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * @return le nombre de fois où un thread JDBC a attendu une place (BLOCK)
+     */
+    public long getBlocked() {
+        return this.blocked.sum();
+    }
+
+    /**
+     * @return le nombre de rotations du fichier
+     */
+    public long getRotations() {
+        return this.rotations.sum();
+    }
+
+    /**
+     * @return le nombre d'erreurs d'entrée / sortie (ouverture, écriture, rotation, fermeture) ou de formatage
+     */
+    public long getFailures() {
+        return this.failures.sum();
+    }
+
+    /**
+     * @return le nombre d'événements en attente d'écriture
+     */
+    public int getPending() {
+        return this.buffer.size();
+    }
+
+    /**
+     * Événement p6spy, formaté par le thread d'écriture.
+     */
+    private static final class Event {
+
+        private final int connectionId;
+
+        private final String now;
+
+        private final long elapsed;
+
+        private final Category category;
+
+        private final String prepared;
+
+        private final String sql;
+
+        /**
+         * texte déjà formaté (logText), null pour une requête.
+         */
+        private final String text;
+
+        Event(final int connectionId, final String now, final long elapsed, final Category category,
+              final String prepared, final String sql, final String text) {
+            this.connectionId = connectionId;
+            this.now = now;
+            this.elapsed = elapsed;
+            this.category = category;
+            this.prepared = prepared;
+            this.sql = sql;
+            this.text = text;
+        }
+
+        String format(final AsyncFileLogger logger) {
+            if (this.text != null) {
+                return this.text;
+            }
+            return logger.strategy.formatMessage(this.connectionId, this.now, this.elapsed, this.category.toString(),
+                    this.prepared, this.sql);
+        }
+    }
+
+}
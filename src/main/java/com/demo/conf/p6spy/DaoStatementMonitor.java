@@ -0,0 +1,218 @@
+package com.demo.conf.p6spy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Compte les requêtes SQL produites par chaque méthode d'un DAO : le DAO est
+ * enveloppé dans un proxy qui ouvre un {@link StatementScope} autour de chaque
+ * appel. Une forme de requête répétée dans un même appel est signalée comme
+ * N+1 probable.
+ * <p>
+ * Les INSERT / UPDATE / DELETE ne partent qu'au flush : sans entity manager
+ * fourni au moniteur, ils sont comptés dans l'appel qui déclenche le flush
+ * (une requête, le commit) et non dans celui qui les a demandés. Avec un
+ * entity manager, le moniteur flushe à la fin de chaque appel réussi fait dans
+ * une transaction, ce qui impute les écritures au bon appel au prix du
+ * regroupement des batchs entre appels.
+ *
+ * <pre>
+ * DaoStatementMonitor monitor = new DaoStatementMonitor(provider::getCurrentEntityManager);
+ * IPersonDao personDao = monitor.wrap(new PersonDaoImpl(), IPersonDao.class);
+ * </pre>
+ */
+public class DaoStatementMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DaoStatementMonitor.class.getName());
+
+    /**
+     * nombre de répétitions d'une forme dans un appel à partir duquel on
+     * suspecte un N+1.
+     */
+    private final int repeatThreshold;
+
+    /**
+     * l'entity manager à flusher à la fin de chaque appel, null (ou
+     * fournissant null) pour ne pas flusher.
+     */
+    private final Supplier<EntityManager> entityManager;
+
+    private final ConcurrentMap<String, MethodStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Constructeur avec le seuil {@link StatementScope#DEFAULT_REPEAT_THRESHOLD},
+     * sans flush : les écritures sont comptées dans l'appel qui les flushe.
+     */
+    public DaoStatementMonitor() {
+        this(StatementScope.DEFAULT_REPEAT_THRESHOLD);
+    }
+
+    /**
+     * Constructeur sans flush.
+     *
+     * @param repeatThreshold nombre de répétitions d'une forme signalé comme N+1
+     */
+    public DaoStatementMonitor(final int repeatThreshold) {
+        this(repeatThreshold, null);
+    }
+
+    /**
+     * Constructeur avec le seuil {@link StatementScope#DEFAULT_REPEAT_THRESHOLD}.
+     *
+     * @param entityManager l'entity manager courant du thread (null s'il n'y en
+     *                      a pas), flushé à la fin de chaque appel
+     */
+    public DaoStatementMonitor(final Supplier<EntityManager> entityManager) {
+        this(StatementScope.DEFAULT_REPEAT_THRESHOLD, entityManager);
+    }
+
+    /**
+     * Constructeur.
+     *
+     * @param repeatThreshold nombre de répétitions d'une forme signalé comme N+1
+     * @param entityManager   l'entity manager courant du thread (null s'il n'y
+     *                        en a pas), flushé à la fin de chaque appel ; null
+     *                        pour ne pas flusher
+     */
+    public DaoStatementMonitor(final int repeatThreshold, final Supplier<EntityManager> entityManager) {
+        this.repeatThreshold = repeatThreshold;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * enveloppe le DAO.
+     *
+     * @param <D>          le type du DAO
+     * @param dao          le DAO
+     * @param daoInterface l'interface exposée par le proxy
+     * @return le DAO surveillé
+     */
+    public <D> D wrap(final D dao, final Class<D> daoInterface) {
+        final InvocationHandler handler = (proxy, method, args) -> this.invoke(dao, method, args);
+        return daoInterface.cast(Proxy.newProxyInstance(daoInterface.getClassLoader(),
+                new Class<?>[]{daoInterface}, handler));
+    }
+
+    private Object invoke(final Object dao, final Method method, final Object[] args) throws Throwable {
+        try (StatementScope scope = StatementScope.open(method.getName())) {
+            try {
+                final Object result = method.invoke(dao, args);
+                this.flushPendingWrites();
+                return result;
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                this.record(method, scope);
+            }
+        }
+    }
+
+    /**
+     * envoie les écritures en attente pour qu'elles soient comptées dans
+     * l'appel qui les a demandées.
+     */
+    private void flushPendingWrites() {
+        if (this.entityManager == null) {
+            return;
+        }
+        final EntityManager current = this.entityManager.get();
+        if (current != null && current.isOpen() && current.isJoinedToTransaction()) {
+            current.flush();
+        }
+    }
+
+    private void record(final Method method, final StatementScope scope) {
+        final String key = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        final Map<String, Integer> repeated = scope.getRepeatedShapes(this.repeatThreshold);
+        this.statistics.computeIfAbsent(key, k -> new MethodStatistics())
+                .record(scope.getStatementCount(), !repeated.isEmpty());
+        if (!repeated.isEmpty()) {
+            LOGGER.warn("{} : N+1 probable, {} requête(s) {}", key, scope.getStatementCount(), repeated);
+        }
+    }
+
+    /**
+     * @return les statistiques par méthode (Interface.methode)
+     */
+    public Map<String, MethodStatistics> getStatistics() {
+        return new TreeMap<>(this.statistics);
+    }
+
+    /**
+     * oublie toutes les statistiques.
+     */
+    public void reset() {
+        this.statistics.clear();
+    }
+
+    /**
+     * requêtes produites par une méthode du DAO.
+     */
+    public static final class MethodStatistics {
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder statements = new LongAdder();
+
+        private final LongAccumulator maxStatements = new LongAccumulator(Long::max, 0);
+
+        private final LongAdder probableNPlusOne = new LongAdder();
+
+        void record(final int statementCount, final boolean repeated) {
+            this.calls.increment();
+            this.statements.add(statementCount);
+            this.maxStatements.accumulate(statementCount);
+            if (repeated) {
+                this.probableNPlusOne.increment();
+            }
+        }
+
+        /**
+         * @return le nombre d'appels
+         */
+        public long getCalls() {
+            return this.calls.sum();
+        }
+
+        /**
+         * @return le nombre total de requêtes
+         */
+        public long getStatements() {
+            return this.statements.sum();
+        }
+
+        /**
+         * @return le nombre maximum de requêtes d'un appel
+         */
+        public long getMaxStatements() {
+            return this.maxStatements.get();
+        }
+
+        /**
+         * @return le nombre d'appels signalés comme N+1 probable
+         */
+        public long getProbableNPlusOne() {
+            return this.probableNPlusOne.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "calls=" + this.getCalls() + " statements=" + this.getStatements() + " max="
+                    + this.getMaxStatements() + " n+1=" + this.getProbableNPlusOne();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.demo.conf.p6spy;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * File bornée sans verrou, plusieurs producteurs et un seul consommateur
+ * (algorithme de D. Vyukov) : chaque case porte un numéro de séquence qui dit
+ * si elle est libre pour le tour courant du producteur ou pleine pour celui du
+ * consommateur. Les producteurs réservent une case par CAS sur la queue, le
+ * consommateur avance la tête sans CAS.
+ *
+ * @param <E> le type des éléments
+ */
+final class RingBuffer<E> {
+
+    private final int mask;
+
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLongArray sequences;
+
+    /**
+     * prochaine position à réserver par un producteur.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * prochaine position à lire, seul le consommateur l'écrit.
+     */
+    private volatile long head;
+
+    /**
+     * @param capacity la capacité, arrondie à la puissance de 2 supérieure
+     */
+    RingBuffer(final int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacité invalide : " + capacity);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * ajoute un élément, sans attendre.
+     *
+     * @param element l'élément, non null
+     * @return false si la file est pleine
+     */
+    boolean offer(final E element) {
+        long position = this.tail.get();
+        int index;
+        while (true) {
+            index = (int) position & this.mask;
+            final long available = this.sequences.get(index) - position;
+            if (available == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.tail.get();
+            } else if (available < 0) {
+                return false;
+            } else {
+                position = this.tail.get();
+            }
+        }
+        this.elements.lazySet(index, element);
+        // publie la case : l'élément est visible avant la séquence
+        this.sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * retire le plus ancien élément. Réservé au consommateur.
+     *
+     * @return l'élément, null si la file est vide
+     */
+    E poll() {
+        final long position = this.head;
+        final int index = (int) position & this.mask;
+        if (this.sequences.get(index) != position + 1) {
+            return null;
+        }
+        final E element = this.elements.get(index);
+        this.elements.lazySet(index, null);
+        // libère la case pour le tour suivant des producteurs
+        this.sequences.lazySet(index, position + this.mask + 1);
+        this.head = position + 1;
+        return element;
+    }
+
+    /**
+     * @return le nombre d'éléments en attente, approché pendant les écritures
+     */
+    int size() {
+        return (int) Math.max(0, Math.min(this.tail.get() - this.head, this.mask + 1L));
+    }
+
+    /**
+     * @return la capacité
+     */
+    int capacity() {
+        return this.mask + 1;
+    }
+
+}
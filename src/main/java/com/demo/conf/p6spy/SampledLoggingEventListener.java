@@ -0,0 +1,42 @@
+package com.demo.conf.p6spy;
+
+import com.p6spy.engine.common.ConnectionInformation;
+import com.p6spy.engine.common.Loggable;
+import com.p6spy.engine.logging.Category;
+import com.p6spy.engine.logging.LoggingEventListener;
+
+import java.sql.SQLException;
+
+/**
+ * Trace texte de p6spy soumise à {@link SpyControl} : rien n'est formaté ni
+ * écrit quand le spy est coupé ou que l'exécution n'est pas tirée. Remplace
+ * le listener du module de log de p6spy par ServiceLoader
+ * (META-INF/services/com.p6spy.engine.logging.LoggingEventListener).
+ */
+public class SampledLoggingEventListener extends LoggingEventListener {
+
+    @Override
+    protected void logElapsed(final Loggable loggable, final long timeElapsedNanos, final Category category,
+                              final SQLException e) {
+        if (SpyControl.getInstance().sample()) {
+            super.logElapsed(loggable, timeElapsedNanos, category, e);
+        }
+    }
+
+    @Override
+    public void onAfterCommit(final ConnectionInformation connectionInformation, final long timeElapsedNanos,
+                              final SQLException e) {
+        if (SpyControl.getInstance().isEnabled()) {
+            super.onAfterCommit(connectionInformation, timeElapsedNanos, e);
+        }
+    }
+
+    @Override
+    public void onAfterRollback(final ConnectionInformation connectionInformation, final long timeElapsedNanos,
+                                final SQLException e) {
+        if (SpyControl.getInstance().isEnabled()) {
+            super.onAfterRollback(connectionInformation, timeElapsedNanos, e);
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.demo.conf.p6spy;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+import java.time.Instant;
+
+/**
+ * Listener p6spy qui capture dans {@link SpyControl} les exécutions plus
+ * longues que le seuil, avec leurs paramètres liés. Toutes les exécutions
+ * sont examinées tant que le spy est actif (l'échantillonnage ne s'applique
+ * pas) : la requête n'est formatée que si elle est lente. Enregistré par
+ * ServiceLoader (META-INF/services/com.p6spy.engine.event.JdbcEventListener).
+ */
+public class SlowQueryListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(final StatementInformation statementInformation, final long timeElapsedNanos,
+                                  final SQLException e) {
+        final SpyControl control = SpyControl.getInstance();
+        if (!control.isSlow(timeElapsedNanos)) {
+            return;
+        }
+        control.recordSlow(new SlowStatement(Instant.now(), timeElapsedNanos,
+                statementInformation.getConnectionInformation().getConnectionId(),
+                statementInformation.getSqlWithValues(), e == null ? null : e.getMessage()));
+    }
+
+}
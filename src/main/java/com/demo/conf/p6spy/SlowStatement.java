@@ -0,0 +1,72 @@
+package com.demo.conf.p6spy;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requête lente capturée par {@link SlowQueryListener}, avec ses paramètres
+ * liés.
+ */
+public final class SlowStatement {
+
+    private final Instant time;
+
+    private final long elapsedNanos;
+
+    private final int connectionId;
+
+    private final String sql;
+
+    private final String error;
+
+    SlowStatement(final Instant time, final long elapsedNanos, final int connectionId, final String sql,
+                  final String error) {
+        this.time = time;
+        this.elapsedNanos = elapsedNanos;
+        this.connectionId = connectionId;
+        this.sql = sql;
+        this.error = error;
+    }
+
+    /**
+     * @return la fin de l'exécution
+     */
+    public Instant getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return la durée de l'exécution en nanosecondes
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * @return l'identifiant p6spy de la connexion
+     */
+    public int getConnectionId() {
+        return this.connectionId;
+    }
+
+    /**
+     * @return la requête avec ses paramètres liés
+     */
+    public String getSql() {
+        return this.sql;
+    }
+
+    /**
+     * @return le message de l'erreur SQL, null si l'exécution a réussi
+     */
+    public String getError() {
+        return this.error;
+    }
+
+    @Override
+    public String toString() {
+        return this.time + " " + TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos) + "ms connection "
+                + this.connectionId + " | " + this.sql + (this.error == null ? "" : " | " + this.error);
+    }
+
+}
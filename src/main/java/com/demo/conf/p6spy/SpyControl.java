@@ -0,0 +1,223 @@
+package com.demo.conf.p6spy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pilotage du spy à chaud, sans redémarrer l'EntityManagerFactory : marche /
+ * arrêt, échantillonnage de la trace texte et des {@link SqlStatistics}, et
+ * capture en mémoire des dernières requêtes lentes (cf
+ * {@link SlowQueryListener}). Exposé en JMX sous
+ * <code>com.demo:type=SpyControl</code>.
+ * <p>
+ * Les listeners ne lisent qu'un volatile quand le spy est coupé ; il reste
+ * seulement l'enveloppe JDBC de p6spy. Valeurs initiales par propriétés
+ * système :
+ * <ul>
+ * <li><code>com.demo.p6spy.spy.enabled</code> (true) ;</li>
+ * <li><code>com.demo.p6spy.spy.sampling_ratio</code> (1.0) ;</li>
+ * <li><code>com.demo.p6spy.spy.slow_threshold_ms</code> (500) ;</li>
+ * <li><code>com.demo.p6spy.spy.slow_buffer_size</code> (100).</li>
+ * </ul>
+ * Le comptage des {@link StatementScope} n'est pas concerné : c'est un
+ * contrôle fonctionnel, pas de l'observation.
+ */
+public final class SpyControl implements SpyControlMBean {
+
+    /**
+     * préfixe des propriétés système.
+     */
+    public static final String PROPERTY_PREFIX = "com.demo.p6spy.spy.";
+
+    /**
+     * nom JMX.
+     */
+    public static final String OBJECT_NAME = "com.demo:type=SpyControl";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpyControl.class.getName());
+
+    private static final SpyControl INSTANCE = new SpyControl();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (final JMException | SecurityException ex) {
+            LOGGER.warn("SpyControl non enregistré en JMX : " + ex.getMessage());
+        }
+    }
+
+    private volatile boolean enabled = Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "enabled", "true"));
+
+    private volatile double samplingRatio = checkRatio(
+            Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "sampling_ratio", "1.0")));
+
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong(PROPERTY_PREFIX + "slow_threshold_ms", 500));
+
+    private int slowBufferSize = Integer.getInteger(PROPERTY_PREFIX + "slow_buffer_size", 100);
+
+    /**
+     * les dernières requêtes lentes, la plus récente en tête ; verrou de la
+     * capture, rare par définition.
+     */
+    private final Deque<SlowStatement> slowStatements = new ArrayDeque<>();
+
+    private final LongAdder slowCount = new LongAdder();
+
+    private SpyControl() {
+    }
+
+    /**
+     * @return le pilotage du spy
+     */
+    public static SpyControl getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * décide si une exécution est tracée et comptée : faux dès que le spy est
+     * coupé, sinon tirage selon le taux d'échantillonnage.
+     *
+     * @return true si l'exécution doit être observée
+     */
+    public boolean sample() {
+        if (!this.enabled) {
+            return false;
+        }
+        final double ratio = this.samplingRatio;
+        return ratio >= 1.0 || ratio > 0.0 && ThreadLocalRandom.current().nextDouble() < ratio;
+    }
+
+    /**
+     * @param elapsedNanos la durée d'une exécution
+     * @return true si le spy est actif et que l'exécution est lente
+     */
+    public boolean isSlow(final long elapsedNanos) {
+        return this.enabled && elapsedNanos >= this.slowThresholdNanos;
+    }
+
+    /**
+     * garde une requête lente, en oubliant la plus ancienne au-delà de la
+     * taille du tampon.
+     *
+     * @param statement la requête lente
+     */
+    void recordSlow(final SlowStatement statement) {
+        this.slowCount.increment();
+        synchronized (this.slowStatements) {
+            this.slowStatements.addFirst(statement);
+            while (this.slowStatements.size() > this.slowBufferSize) {
+                this.slowStatements.removeLast();
+            }
+        }
+    }
+
+    /**
+     * @return les dernières requêtes lentes, la plus récente en premier
+     */
+    public List<SlowStatement> getSlowStatementList() {
+        synchronized (this.slowStatements) {
+            return new ArrayList<>(this.slowStatements);
+        }
+    }
+
+    @Override
+    public String[] getSlowStatements() {
+        final List<SlowStatement> statements = this.getSlowStatementList();
+        final String[] lines = new String[statements.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = statements.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public void clearSlowStatements() {
+        synchronized (this.slowStatements) {
+            this.slowStatements.clear();
+        }
+        this.slowCount.reset();
+    }
+
+    @Override
+    public long getSlowCount() {
+        return this.slowCount.sum();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+        LOGGER.info("spy " + (enabled ? "activé" : "coupé"));
+    }
+
+    @Override
+    public double getSamplingRatio() {
+        return this.samplingRatio;
+    }
+
+    @Override
+    public void setSamplingRatio(final double samplingRatio) {
+        this.samplingRatio = checkRatio(samplingRatio);
+    }
+
+    @Override
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.slowThresholdNanos);
+    }
+
+    @Override
+    public void setSlowThresholdMillis(final long slowThresholdMillis) {
+        if (slowThresholdMillis < 0) {
+            throw new IllegalArgumentException("seuil négatif : " + slowThresholdMillis);
+        }
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    @Override
+    public int getSlowBufferSize() {
+        synchronized (this.slowStatements) {
+            return this.slowBufferSize;
+        }
+    }
+
+    @Override
+    public void setSlowBufferSize(final int slowBufferSize) {
+        if (slowBufferSize < 0) {
+            throw new IllegalArgumentException("taille négative : " + slowBufferSize);
+        }
+        synchronized (this.slowStatements) {
+            this.slowBufferSize = slowBufferSize;
+            while (this.slowStatements.size() > slowBufferSize) {
+                this.slowStatements.removeLast();
+            }
+        }
+    }
+
+    /**
+     * @param ratio un taux d'échantillonnage
+     * @return le taux, s'il est entre 0 et 1
+     */
+    private static double checkRatio(final double ratio) {
+        if (!(ratio >= 0.0 && ratio <= 1.0)) {
+            throw new IllegalArgumentException("le taux d'échantillonnage doit être entre 0 et 1 : " + ratio);
+        }
+        return ratio;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.demo.conf.p6spy;
+
+/**
+ * Interface JMX de {@link SpyControl} (<code>com.demo:type=SpyControl</code>).
+ */
+public interface SpyControlMBean {
+
+    /**
+     * @return true si le spy trace, compte et capture les requêtes lentes
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled false pour couper le spy sans redémarrer la factory
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return la part des requêtes tracées et comptées, entre 0 et 1
+     */
+    double getSamplingRatio();
+
+    /**
+     * @param samplingRatio la part des requêtes tracées et comptées, entre 0 et 1
+     */
+    void setSamplingRatio(double samplingRatio);
+
+    /**
+     * @return la durée à partir de laquelle une requête est capturée comme lente, en ms
+     */
+    long getSlowThresholdMillis();
+
+    /**
+     * @param slowThresholdMillis la durée à partir de laquelle une requête est lente, en ms
+     */
+    void setSlowThresholdMillis(long slowThresholdMillis);
+
+    /**
+     * @return le nombre de requêtes lentes gardées en mémoire
+     */
+    int getSlowBufferSize();
+
+    /**
+     * @param slowBufferSize le nombre de requêtes lentes gardées en mémoire
+     */
+    void setSlowBufferSize(int slowBufferSize);
+
+    /**
+     * @return le nombre de requêtes lentes vues depuis le dernier vidage
+     */
+    long getSlowCount();
+
+    /**
+     * @return les dernières requêtes lentes, la plus récente en premier
+     */
+    String[] getSlowStatements();
+
+    /**
+     * oublie les requêtes lentes capturées.
+     */
+    void clearSlowStatements();
+
+}
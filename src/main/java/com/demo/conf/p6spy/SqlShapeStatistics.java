@@ -0,0 +1,75 @@
+package com.demo.conf.p6spy;
+
+import com.demo.conf.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs d'une forme de requête SQL : exécutions, erreurs, lignes
+ * modifiées et histogramme des latences.
+ */
+public final class SqlShapeStatistics {
+
+    private final String shape;
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder rowsAffected = new LongAdder();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    SqlShapeStatistics(final String shape) {
+        this.shape = shape;
+    }
+
+    void record(final long nanos, final boolean error) {
+        this.latencies.record(nanos);
+        if (error) {
+            this.errors.increment();
+        }
+    }
+
+    void addRowsAffected(final long rows) {
+        if (rows > 0) {
+            this.rowsAffected.add(rows);
+        }
+    }
+
+    /**
+     * @return la forme de la requête
+     */
+    public String getShape() {
+        return this.shape;
+    }
+
+    /**
+     * @return le nombre d'erreurs
+     */
+    public long getErrorCount() {
+        return this.errors.sum();
+    }
+
+    /**
+     * @return le nombre de lignes modifiées (update, delete, insert, batch)
+     */
+    public long getRowsAffected() {
+        return this.rowsAffected.sum();
+    }
+
+    /**
+     * @return les latences, dont le nombre d'exécutions
+     */
+    public LatencyHistogram.Snapshot getLatencies() {
+        return this.latencies.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        final LatencyHistogram.Snapshot snapshot = this.latencies.snapshot();
+        return String.format("count=%d errors=%d rows=%d p50=%dus p99=%dus max=%dus total=%dms | %s",
+                snapshot.getCount(), this.getErrorCount(), this.getRowsAffected(),
+                snapshot.getPercentileNanos(50) / 1000, snapshot.getPercentileNanos(99) / 1000,
+                snapshot.getMaxNanos() / 1000, snapshot.getTotalNanos() / 1_000_000, this.shape);
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.demo.conf.p6spy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Normalise une requête SQL en sa forme : les littéraux (chaînes, nombres)
+ * sont remplacés par <code>?</code>, les listes <code>IN (?, ?, ...)</code>
+ * réduites à <code>IN (?)</code> et les blancs compactés. Deux exécutions qui
+ * ne diffèrent que par leurs valeurs ont donc la même forme.
+ */
+public final class SqlShapes {
+
+    /**
+     * nombre maximum de requêtes dont la forme est mémorisée.
+     */
+    private static final int MAX_CACHED = 10_000;
+
+    /**
+     * les formes déjà calculées : les requêtes préparées d'hibernate sont
+     * toujours les mêmes chaînes.
+     */
+    private static final ConcurrentMap<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private SqlShapes() {
+    }
+
+    /**
+     * @param sql la requête
+     * @return la forme de la requête
+     */
+    public static String shapeOf(final String sql) {
+        if (sql == null) {
+            return "";
+        }
+        final String cached = CACHE.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        final String shape = normalize(sql);
+        if (CACHE.size() < MAX_CACHED) {
+            CACHE.put(sql, shape);
+        }
+        return shape;
+    }
+
+    static String normalize(final String sql) {
+        final StringBuilder out = new StringBuilder(sql.length());
+        final int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            final char c = sql.charAt(i);
+            if (c == '\'') {
+                // littéral chaîne, '' échappe une quote
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                appendPlaceholder(out);
+            } else if (c == '?') {
+                i++;
+                appendPlaceholder(out);
+            } else if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                appendPlaceholder(out);
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString().trim();
+    }
+
+    /**
+     * ajoute un <code>?</code>, sauf s'il prolonge une liste de <code>?</code>.
+     */
+    private static void appendPlaceholder(final StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end > 0 && out.charAt(end - 1) == ',') {
+            int previous = end - 1;
+            while (previous > 0 && out.charAt(previous - 1) == ' ') {
+                previous--;
+            }
+            if (previous > 0 && out.charAt(previous - 1) == '?') {
+                out.setLength(previous);
+                return;
+            }
+        }
+        out.append('?');
+    }
+
+    private static boolean isIdentifierPart(final StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        final char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$';
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.demo.conf.p6spy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistiques SQL par forme de requête, alimentées par
+ * {@link SqlStatisticsListener}. Lecture en process via {@link #getStatistics()}
+ * et, optionnellement, dump périodique dans les logs : soit par
+ * {@link #startPeriodicDump(long, TimeUnit)}, soit avec la propriété système
+ * <code>com.demo.sql.statistics.dump.seconds</code>.
+ */
+public final class SqlStatistics {
+
+    /**
+     * propriété système : période du dump en secondes.
+     */
+    public static final String DUMP_PERIOD_PROPERTY = "com.demo.sql.statistics.dump.seconds";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlStatistics.class.getName());
+
+    /**
+     * nombre de formes écrites par dump.
+     */
+    private static final int DUMP_TOP = 20;
+
+    private static final ConcurrentMap<String, SqlShapeStatistics> STATISTICS = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService dumpExecutor;
+
+    private static ScheduledFuture<?> dumpTask;
+
+    static {
+        final Long period = Long.getLong(DUMP_PERIOD_PROPERTY);
+        if (period != null && period > 0) {
+            startPeriodicDump(period, TimeUnit.SECONDS);
+        }
+    }
+
+    private SqlStatistics() {
+    }
+
+    /**
+     * @param shape la forme de la requête
+     * @return les compteurs de la forme, créés au premier appel
+     */
+    static SqlShapeStatistics forShape(final String shape) {
+        final SqlShapeStatistics statistics = STATISTICS.get(shape);
+        return statistics != null ? statistics : STATISTICS.computeIfAbsent(shape, SqlShapeStatistics::new);
+    }
+
+    /**
+     * @return les statistiques de toutes les formes, par temps total décroissant
+     */
+    public static List<SqlShapeStatistics> getStatistics() {
+        final List<SqlShapeStatistics> statistics = new ArrayList<>(STATISTICS.values());
+        statistics.sort(Comparator.comparingLong((SqlShapeStatistics s) -> s.getLatencies().getTotalNanos()).reversed());
+        return statistics;
+    }
+
+    /**
+     * @param shape la forme de la requête, cf {@link SqlShapes#shapeOf(String)}
+     * @return les statistiques de la forme, null si elle n'a jamais été exécutée
+     */
+    public static SqlShapeStatistics getStatistics(final String shape) {
+        return STATISTICS.get(shape);
+    }
+
+    /**
+     * oublie toutes les statistiques.
+     */
+    public static void reset() {
+        STATISTICS.clear();
+    }
+
+    /**
+     * écrit les formes les plus coûteuses dans les logs, à intervalle régulier.
+     *
+     * @param period la période
+     * @param unit   l'unité de la période
+     */
+    public static synchronized void startPeriodicDump(final long period, final TimeUnit unit) {
+        stopPeriodicDump();
+        if (dumpExecutor == null) {
+            dumpExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "sql-statistics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        dumpTask = dumpExecutor.scheduleAtFixedRate(SqlStatistics::dump, period, period, unit);
+    }
+
+    /**
+     * arrête le dump périodique.
+     */
+    public static synchronized void stopPeriodicDump() {
+        if (dumpTask != null) {
+            dumpTask.cancel(false);
+            dumpTask = null;
+        }
+    }
+
+    /**
+     * écrit les formes les plus coûteuses dans les logs.
+     */
+    public static void dump() {
+        final List<SqlShapeStatistics> statistics = getStatistics();
+        LOGGER.info("statistiques SQL : {} formes", statistics.size());
+        for (final SqlShapeStatistics shape : statistics.subList(0, Math.min(DUMP_TOP, statistics.size()))) {
+            LOGGER.info("{}", shape);
+        }
+    }
+
+}
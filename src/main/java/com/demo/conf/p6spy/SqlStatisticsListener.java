@@ -0,0 +1,59 @@
+package com.demo.conf.p6spy;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+
+/**
+ * Listener p6spy qui alimente {@link SqlStatistics} à chaque exécution, sans
+ * formater ni écrire la requête. Enregistré par ServiceLoader
+ * (META-INF/services/com.p6spy.engine.event.JdbcEventListener).
+ * <p>
+ * Soumis à {@link SpyControl} : les exécutions sont échantillonnées, les
+ * lignes modifiées restent toutes comptées tant que le spy est actif.
+ */
+public class SqlStatisticsListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(final StatementInformation statementInformation, final long timeElapsedNanos,
+                                  final SQLException e) {
+        if (!SpyControl.getInstance().sample()) {
+            return;
+        }
+        SqlStatistics.forShape(SqlShapes.shapeOf(statementInformation.getSql())).record(timeElapsedNanos, e != null);
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(final PreparedStatementInformation statementInformation,
+                                     final long timeElapsedNanos, final int rowCount, final SQLException e) {
+        if (SpyControl.getInstance().isEnabled()) {
+            SqlStatistics.forShape(SqlShapes.shapeOf(statementInformation.getSql())).addRowsAffected(rowCount);
+        }
+        super.onAfterExecuteUpdate(statementInformation, timeElapsedNanos, rowCount, e);
+    }
+
+    @Override
+    public void onAfterExecuteUpdate(final StatementInformation statementInformation, final long timeElapsedNanos,
+                                     final String sql, final int rowCount, final SQLException e) {
+        if (SpyControl.getInstance().isEnabled()) {
+            SqlStatistics.forShape(SqlShapes.shapeOf(statementInformation.getSql())).addRowsAffected(rowCount);
+        }
+        super.onAfterExecuteUpdate(statementInformation, timeElapsedNanos, sql, rowCount, e);
+    }
+
+    @Override
+    public void onAfterExecuteBatch(final StatementInformation statementInformation, final long timeElapsedNanos,
+                                    final int[] updateCounts, final SQLException e) {
+        if (updateCounts != null && SpyControl.getInstance().isEnabled()) {
+            long rows = 0;
+            for (final int count : updateCounts) {
+                rows += Math.max(count, 0);
+            }
+            SqlStatistics.forShape(SqlShapes.shapeOf(statementInformation.getSql())).addRowsAffected(rows);
+        }
+        super.onAfterExecuteBatch(statementInformation, timeElapsedNanos, updateCounts, e);
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.demo.conf.p6spy;
+
+import com.demo.conf.exception.StatementBudgetException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compte les requêtes SQL exécutées par le thread courant entre l'ouverture et
+ * la fermeture du scope, par forme de requête. Les scopes s'imbriquent : une
+ * requête est comptée dans tous les scopes ouverts du thread.
+ *
+ * <pre>
+ * try (StatementScope scope = StatementScope.open("findByName")) {
+ *     personDao.findByName("bob");
+ *     scope.assertStatementCount(1);
+ * }
+ * </pre>
+ *
+ * Alimenté par {@link StatementScopeListener}, il faut donc passer par une
+ * unité de persistance p6spy. Les écritures sont comptées quand elles partent
+ * en base, c'est-à-dire au flush : flusher avant de fermer le scope pour les y
+ * compter.
+ */
+public final class StatementScope implements AutoCloseable {
+
+    /**
+     * seuil par défaut de répétition d'une forme au-delà duquel on suspecte un
+     * N+1.
+     */
+    public static final int DEFAULT_REPEAT_THRESHOLD = 3;
+
+    private static final ThreadLocal<Deque<StatementScope>> SCOPES = new ThreadLocal<>();
+
+    private final String name;
+
+    private final Map<String, Integer> countsByShape = new LinkedHashMap<>();
+
+    private int statementCount;
+
+    private boolean closed;
+
+    private StatementScope(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * ouvre un scope sur le thread courant.
+     *
+     * @param name nom de l'unité de travail, repris dans les messages
+     * @return le scope, à fermer
+     */
+    public static StatementScope open(final String name) {
+        Deque<StatementScope> scopes = SCOPES.get();
+        if (scopes == null) {
+            scopes = new ArrayDeque<>();
+            SCOPES.set(scopes);
+        }
+        final StatementScope scope = new StatementScope(name);
+        scopes.push(scope);
+        return scope;
+    }
+
+    /**
+     * enregistre une requête dans les scopes ouverts du thread courant.
+     *
+     * @param sql la requête
+     */
+    static void record(final String sql) {
+        final Deque<StatementScope> scopes = SCOPES.get();
+        if (scopes == null || scopes.isEmpty()) {
+            return;
+        }
+        final String shape = SqlShapes.shapeOf(sql);
+        for (final StatementScope scope : scopes) {
+            scope.statementCount++;
+            scope.countsByShape.merge(shape, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * @return le nom de l'unité de travail
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return le nombre de requêtes exécutées (un executeBatch compte pour une)
+     */
+    public int getStatementCount() {
+        return this.statementCount;
+    }
+
+    /**
+     * @return le nombre d'exécutions par forme de requête
+     */
+    public Map<String, Integer> getCountsByShape() {
+        return new LinkedHashMap<>(this.countsByShape);
+    }
+
+    /**
+     * @param threshold nombre d'exécutions à partir duquel une forme est suspecte
+     * @return les formes exécutées au moins <code>threshold</code> fois : N+1 probable
+     */
+    public Map<String, Integer> getRepeatedShapes(final int threshold) {
+        final Map<String, Integer> repeated = new LinkedHashMap<>();
+        for (final Map.Entry<String, Integer> entry : this.countsByShape.entrySet()) {
+            if (entry.getValue() >= threshold) {
+                repeated.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return repeated;
+    }
+
+    /**
+     * @param expected nombre exact de requêtes attendu
+     * @throws StatementBudgetException si le nombre diffère
+     */
+    public void assertStatementCount(final int expected) throws StatementBudgetException {
+        if (this.statementCount != expected) {
+            throw new StatementBudgetException(this.describe("exactement " + expected));
+        }
+    }
+
+    /**
+     * @param budget nombre maximum de requêtes
+     * @throws StatementBudgetException si le budget est dépassé
+     */
+    public void assertAtMost(final int budget) throws StatementBudgetException {
+        if (this.statementCount > budget) {
+            throw new StatementBudgetException(this.describe("au plus " + budget));
+        }
+    }
+
+    /**
+     * @throws StatementBudgetException si une forme est répétée au moins
+     *                                  {@link #DEFAULT_REPEAT_THRESHOLD} fois
+     */
+    public void assertNoRepeatedShapes() throws StatementBudgetException {
+        final Map<String, Integer> repeated = this.getRepeatedShapes(DEFAULT_REPEAT_THRESHOLD);
+        if (!repeated.isEmpty()) {
+            throw new StatementBudgetException(this.name + " : N+1 probable " + repeated);
+        }
+    }
+
+    private String describe(final String expectation) {
+        return this.name + " : " + this.statementCount + " requête(s) exécutée(s), " + expectation
+                + " attendue(s) " + this.countsByShape;
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        final Deque<StatementScope> scopes = SCOPES.get();
+        if (scopes != null) {
+            scopes.remove(this);
+            if (scopes.isEmpty()) {
+                SCOPES.remove();
+            }
+        }
+    }
+
+}
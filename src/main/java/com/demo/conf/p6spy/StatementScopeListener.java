@@ -0,0 +1,21 @@
+package com.demo.conf.p6spy;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+
+/**
+ * Listener p6spy qui compte chaque exécution dans les {@link StatementScope}
+ * ouverts par le thread courant. Enregistré par ServiceLoader
+ * (META-INF/services/com.p6spy.engine.event.JdbcEventListener).
+ */
+public class StatementScopeListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(final StatementInformation statementInformation, final long timeElapsedNanos,
+                                  final SQLException e) {
+        StatementScope.record(statementInformation.getSql());
+    }
+
+}
@@ -0,0 +1,684 @@
+package com.demo.dao;
+
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Résultat de lecture en masse rangé par colonne plutôt qu'en entités : une
+ * colonne par attribut basique de l'entité, sans entité gérée, sans snapshot
+ * et sans valeur boxée par ligne.
+ * <ul>
+ * <li>les entiers (int, short, byte), les long et les décimaux (double, float)
+ * sont dans des tableaux de primitifs ;</li>
+ * <li>les chaînes et les enums sont encodés par dictionnaire : un code
+ * <code>int</code> par ligne et chaque valeur distincte une seule fois ;</li>
+ * <li>les autres types sont gardés tels quels.</li>
+ * </ul>
+ * Les null sont notés à part (code -1 pour une colonne à dictionnaire).
+ *
+ * @param <ENTITY>
+ *            : l'entité lue
+ */
+public final class ColumnarResult<ENTITY> {
+
+	/**
+	 * le nombre de lignes.
+	 */
+	private final int size;
+
+	/**
+	 * les colonnes, par nom d'attribut, dans l'ordre de la sélection.
+	 */
+	private final Map<String, Column> columns;
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param size
+	 *            : le nombre de lignes
+	 * @param columns
+	 *            : les colonnes
+	 */
+	private ColumnarResult(final int size, final Map<String, Column> columns) {
+		this.size = size;
+		this.columns = Collections.unmodifiableMap(columns);
+	}
+
+	/**
+	 * @return le nombre de lignes
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return les noms des colonnes, dans l'ordre de la sélection
+	 */
+	public List<String> getColumnNames() {
+		return new ArrayList<>(this.columns.keySet());
+	}
+
+	/**
+	 * retourne la colonne d'un attribut.
+	 *
+	 * @param name
+	 *            : le nom de l'attribut
+	 * @return la colonne
+	 */
+	public Column getColumn(final String name) {
+		final Column column = this.columns.get(name);
+		if (column == null) {
+			throw new IllegalArgumentException("Pas de colonne pour l'attribut " + name);
+		}
+		return column;
+	}
+
+	/**
+	 * retourne la colonne d'un attribut.
+	 *
+	 * @param attribute
+	 *            : l'attribut (ex : <code>Person_.name</code>)
+	 * @return la colonne
+	 */
+	public Column getColumn(final SingularAttribute<? super ENTITY, ?> attribute) {
+		return this.getColumn(attribute.getName());
+	}
+
+	/**
+	 * @param attribute
+	 *            : un attribut entier
+	 * @return la colonne entière
+	 */
+	public IntColumn getIntColumn(final SingularAttribute<? super ENTITY, ?> attribute) {
+		return (IntColumn) this.getColumn(attribute);
+	}
+
+	/**
+	 * @param attribute
+	 *            : un attribut long
+	 * @return la colonne de long
+	 */
+	public LongColumn getLongColumn(final SingularAttribute<? super ENTITY, ?> attribute) {
+		return (LongColumn) this.getColumn(attribute);
+	}
+
+	/**
+	 * @param attribute
+	 *            : un attribut décimal
+	 * @return la colonne de double
+	 */
+	public DoubleColumn getDoubleColumn(final SingularAttribute<? super ENTITY, ?> attribute) {
+		return (DoubleColumn) this.getColumn(attribute);
+	}
+
+	/**
+	 * @param attribute
+	 *            : un attribut chaîne ou enum
+	 * @return la colonne encodée par dictionnaire
+	 */
+	public DictionaryColumn getDictionaryColumn(final SingularAttribute<? super ENTITY, ?> attribute) {
+		return (DictionaryColumn) this.getColumn(attribute);
+	}
+
+	/**
+	 * crée un builder pour les attributs donnés, remplis dans cet ordre par
+	 * {@link Builder#addRow(Object[])}.
+	 *
+	 * @param <ENTITY>
+	 *            : l'entité lue
+	 * @param attributes
+	 *            : les attributs sélectionnés
+	 * @return le builder
+	 */
+	public static <ENTITY> Builder<ENTITY> builder(final List<? extends SingularAttribute<? super ENTITY, ?>> attributes) {
+		return new Builder<>(attributes);
+	}
+
+	/**
+	 * Remplit un {@link ColumnarResult} ligne à ligne. Les tableaux grossissent
+	 * par doublement et sont retaillés à la construction.
+	 *
+	 * @param <ENTITY>
+	 *            : l'entité lue
+	 */
+	public static final class Builder<ENTITY> {
+
+		/**
+		 * capacité initiale des colonnes.
+		 */
+		private static final int INITIAL_CAPACITY = 1024;
+
+		/**
+		 * les colonnes en cours de remplissage, dans l'ordre des attributs.
+		 */
+		private final Column[] columns;
+
+		/**
+		 * les noms des colonnes.
+		 */
+		private final String[] names;
+
+		/**
+		 * le nombre de lignes ajoutées.
+		 */
+		private int size;
+
+		/**
+		 * le builder a déjà construit son résultat.
+		 */
+		private boolean built;
+
+		/**
+		 * Constructeur.
+		 *
+		 * @param attributes
+		 *            : les attributs sélectionnés
+		 */
+		private Builder(final List<? extends SingularAttribute<? super ENTITY, ?>> attributes) {
+			this.columns = new Column[attributes.size()];
+			this.names = new String[attributes.size()];
+			for (int i = 0; i < this.columns.length; i++) {
+				this.names[i] = attributes.get(i).getName();
+				this.columns[i] = Column.of(attributes.get(i).getJavaType());
+			}
+		}
+
+		/**
+		 * ajoute une ligne.
+		 *
+		 * @param row
+		 *            : les valeurs, dans l'ordre des attributs
+		 * @return ce builder
+		 */
+		public Builder<ENTITY> addRow(final Object[] row) {
+			this.checkNotBuilt();
+			if (row.length != this.columns.length) {
+				throw new IllegalArgumentException(
+								"La ligne a " + row.length + " valeurs pour " + this.columns.length + " colonnes");
+			}
+			for (int i = 0; i < this.columns.length; i++) {
+				this.columns[i].add(this.size, row[i]);
+			}
+			this.size++;
+			return this;
+		}
+
+		/**
+		 * ajoute toutes les lignes d'un résultat construit pour les mêmes
+		 * attributs, colonne par colonne.
+		 *
+		 * @param other
+		 *            : le résultat à ajouter
+		 * @return ce builder
+		 */
+		public Builder<ENTITY> addAll(final ColumnarResult<ENTITY> other) {
+			this.checkNotBuilt();
+			if (!Arrays.asList(this.names).equals(other.getColumnNames())) {
+				throw new IllegalArgumentException("Les colonnes ne correspondent pas : " + other.getColumnNames());
+			}
+			for (int i = 0; i < this.columns.length; i++) {
+				this.columns[i].addAll(this.size, other.getColumn(this.names[i]), other.size());
+			}
+			this.size += other.size();
+			return this;
+		}
+
+		/**
+		 * @return le résultat ; le builder n'est plus utilisable ensuite
+		 */
+		public ColumnarResult<ENTITY> build() {
+			this.checkNotBuilt();
+			this.built = true;
+			final Map<String, Column> byName = new LinkedHashMap<>();
+			for (int i = 0; i < this.columns.length; i++) {
+				this.columns[i].trim(this.size);
+				byName.put(this.names[i], this.columns[i]);
+			}
+			return new ColumnarResult<>(this.size, byName);
+		}
+
+		/**
+		 * vérifie que le builder n'a pas encore construit son résultat.
+		 */
+		private void checkNotBuilt() {
+			if (this.built) {
+				throw new IllegalStateException("Le résultat est déjà construit");
+			}
+		}
+	}
+
+	/**
+	 * Une colonne du résultat.
+	 */
+	public abstract static class Column {
+
+		/**
+		 * les lignes null, créé au premier null.
+		 */
+		private BitSet nulls;
+
+		/**
+		 * crée la colonne adaptée au type java de l'attribut.
+		 *
+		 * @param javaType
+		 *            : le type de l'attribut
+		 * @return la colonne
+		 */
+		static Column of(final Class<?> javaType) {
+			if (javaType == int.class || javaType == Integer.class || javaType == short.class
+							|| javaType == Short.class || javaType == byte.class || javaType == Byte.class) {
+				return new IntColumn();
+			}
+			if (javaType == long.class || javaType == Long.class) {
+				return new LongColumn();
+			}
+			if (javaType == double.class || javaType == Double.class || javaType == float.class
+							|| javaType == Float.class) {
+				return new DoubleColumn();
+			}
+			if (javaType == String.class || javaType.isEnum()) {
+				return new DictionaryColumn();
+			}
+			return new ObjectColumn();
+		}
+
+		/**
+		 * @param row
+		 *            : l'index de la ligne
+		 * @return <code>true</code> si la valeur est null
+		 */
+		public boolean isNull(final int row) {
+			return this.nulls != null && this.nulls.get(row);
+		}
+
+		/**
+		 * @param row
+		 *            : l'index de la ligne
+		 * @return la valeur, boxée pour les colonnes de primitifs
+		 */
+		public abstract Object get(int row);
+
+		/**
+		 * note une ligne null.
+		 *
+		 * @param row
+		 *            : l'index de la ligne
+		 */
+		final void markNull(final int row) {
+			if (this.nulls == null) {
+				this.nulls = new BitSet();
+			}
+			this.nulls.set(row);
+		}
+
+		/**
+		 * recopie les null d'une autre colonne.
+		 *
+		 * @param row
+		 *            : l'index de la première ligne recopiée
+		 * @param other
+		 *            : l'autre colonne
+		 */
+		final void copyNulls(final int row, final Column other) {
+			if (other.nulls != null) {
+				for (int i = other.nulls.nextSetBit(0); i >= 0; i = other.nulls.nextSetBit(i + 1)) {
+					this.markNull(row + i);
+				}
+			}
+		}
+
+		/**
+		 * ajoute une valeur.
+		 *
+		 * @param row
+		 *            : l'index de la ligne
+		 * @param value
+		 *            : la valeur, peut être null
+		 */
+		abstract void add(int row, Object value);
+
+		/**
+		 * ajoute les valeurs d'une colonne du même type.
+		 *
+		 * @param row
+		 *            : l'index de la première ligne ajoutée
+		 * @param other
+		 *            : la colonne
+		 * @param count
+		 *            : le nombre de lignes de la colonne
+		 */
+		abstract void addAll(int row, Column other, int count);
+
+		/**
+		 * retaille le stockage au nombre de lignes.
+		 *
+		 * @param size
+		 *            : le nombre de lignes
+		 */
+		abstract void trim(int size);
+
+		/**
+		 * @param current
+		 *            : la capacité actuelle
+		 * @param needed
+		 *            : la capacité nécessaire
+		 * @return la nouvelle capacité
+		 */
+		static int grow(final int current, final int needed) {
+			return Math.max(needed, Math.max(Builder.INITIAL_CAPACITY, current + (current >> 1)));
+		}
+	}
+
+	/**
+	 * Colonne d'entiers.
+	 */
+	public static final class IntColumn extends Column {
+
+		private int[] values = new int[0];
+
+		/**
+		 * @param row
+		 *            : l'index de la ligne
+		 * @return la valeur, 0 si elle est null
+		 */
+		public int getInt(final int row) {
+			return this.values[row];
+		}
+
+		/**
+		 * @return les valeurs, sans copie : à ne pas modifier
+		 */
+		public int[] values() {
+			return this.values;
+		}
+
+		@Override
+		public Object get(final int row) {
+			return this.isNull(row) ? null : this.values[row];
+		}
+
+		@Override
+		void add(final int row, final Object value) {
+			this.ensureCapacity(row + 1);
+			if (value == null) {
+				this.markNull(row);
+			} else {
+				this.values[row] = ((Number) value).intValue();
+			}
+		}
+
+		@Override
+		void addAll(final int row, final Column other, final int count) {
+			this.ensureCapacity(row + count);
+			System.arraycopy(((IntColumn) other).values, 0, this.values, row, count);
+			this.copyNulls(row, other);
+		}
+
+		@Override
+		void trim(final int size) {
+			this.values = Arrays.copyOf(this.values, size);
+		}
+
+		private void ensureCapacity(final int needed) {
+			if (needed > this.values.length) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, needed));
+			}
+		}
+	}
+
+	/**
+	 * Colonne de long.
+	 */
+	public static final class LongColumn extends Column {
+
+		private long[] values = new long[0];
+
+		/**
+		 * @param row
+		 *            : l'index de la ligne
+		 * @return la valeur, 0 si elle est null
+		 */
+		public long getLong(final int row) {
+			return this.values[row];
+		}
+
+		/**
+		 * @return les valeurs, sans copie : à ne pas modifier
+		 */
+		public long[] values() {
+			return this.values;
+		}
+
+		@Override
+		public Object get(final int row) {
+			return this.isNull(row) ? null : this.values[row];
+		}
+
+		@Override
+		void add(final int row, final Object value) {
+			this.ensureCapacity(row + 1);
+			if (value == null) {
+				this.markNull(row);
+			} else {
+				this.values[row] = ((Number) value).longValue();
+			}
+		}
+
+		@Override
+		void addAll(final int row, final Column other, final int count) {
+			this.ensureCapacity(row + count);
+			System.arraycopy(((LongColumn) other).values, 0, this.values, row, count);
+			this.copyNulls(row, other);
+		}
+
+		@Override
+		void trim(final int size) {
+			this.values = Arrays.copyOf(this.values, size);
+		}
+
+		private void ensureCapacity(final int needed) {
+			if (needed > this.values.length) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, needed));
+			}
+		}
+	}
+
+	/**
+	 * Colonne de décimaux.
+	 */
+	public static final class DoubleColumn extends Column {
+
+		private double[] values = new double[0];
+
+		/**
+		 * @param row
+		 *            : l'index de la ligne
+		 * @return la valeur, 0 si elle est null
+		 */
+		public double getDouble(final int row) {
+			return this.values[row];
+		}
+
+		/**
+		 * @return les valeurs, sans copie : à ne pas modifier
+		 */
+		public double[] values() {
+			return this.values;
+		}
+
+		@Override
+		public Object get(final int row) {
+			return this.isNull(row) ? null : this.values[row];
+		}
+
+		@Override
+		void add(final int row, final Object value) {
+			this.ensureCapacity(row + 1);
+			if (value == null) {
+				this.markNull(row);
+			} else {
+				this.values[row] = ((Number) value).doubleValue();
+			}
+		}
+
+		@Override
+		void addAll(final int row, final Column other, final int count) {
+			this.ensureCapacity(row + count);
+			System.arraycopy(((DoubleColumn) other).values, 0, this.values, row, count);
+			this.copyNulls(row, other);
+		}
+
+		@Override
+		void trim(final int size) {
+			this.values = Arrays.copyOf(this.values, size);
+		}
+
+		private void ensureCapacity(final int needed) {
+			if (needed > this.values.length) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, needed));
+			}
+		}
+	}
+
+	/**
+	 * Colonne encodée par dictionnaire : un code par ligne, indice de la valeur
+	 * dans le dictionnaire, -1 pour null.
+	 */
+	public static final class DictionaryColumn extends Column {
+
+		private int[] codes = new int[0];
+
+		private final List<Object> dictionary = new ArrayList<>();
+
+		/**
+		 * index valeur vers code, libéré à la construction du résultat.
+		 */
+		private Map<Object, Integer> index = new HashMap<>();
+
+		/**
+		 * @param row
+		 *            : l'index de la ligne
+		 * @return le code de la valeur, -1 si elle est null
+		 */
+		public int getCode(final int row) {
+			return this.codes[row];
+		}
+
+		/**
+		 * @return les codes, sans copie : à ne pas modifier
+		 */
+		public int[] codes() {
+			return this.codes;
+		}
+
+		/**
+		 * @return les valeurs distinctes, le code est l'index dans la liste
+		 */
+		public List<Object> getDictionary() {
+			return Collections.unmodifiableList(this.dictionary);
+		}
+
+		@Override
+		public boolean isNull(final int row) {
+			return this.codes[row] < 0;
+		}
+
+		@Override
+		public Object get(final int row) {
+			final int code = this.codes[row];
+			return code < 0 ? null : this.dictionary.get(code);
+		}
+
+		@Override
+		void add(final int row, final Object value) {
+			this.ensureCapacity(row + 1);
+			this.codes[row] = value == null ? -1 : this.codeOf(value);
+		}
+
+		@Override
+		void addAll(final int row, final Column other, final int count) {
+			this.ensureCapacity(row + count);
+			final DictionaryColumn column = (DictionaryColumn) other;
+			// recodage : un code de l'autre dictionnaire vers un code de celui-ci
+			final int[] recode = new int[column.dictionary.size()];
+			for (int i = 0; i < recode.length; i++) {
+				recode[i] = this.codeOf(column.dictionary.get(i));
+			}
+			for (int i = 0; i < count; i++) {
+				final int code = column.codes[i];
+				this.codes[row + i] = code < 0 ? -1 : recode[code];
+			}
+		}
+
+		@Override
+		void trim(final int size) {
+			this.codes = Arrays.copyOf(this.codes, size);
+			this.index = null;
+		}
+
+		private int codeOf(final Object value) {
+			final Integer code = this.index.get(value);
+			if (code != null) {
+				return code;
+			}
+			this.dictionary.add(value);
+			this.index.put(value, this.dictionary.size() - 1);
+			return this.dictionary.size() - 1;
+		}
+
+		private void ensureCapacity(final int needed) {
+			if (needed > this.codes.length) {
+				this.codes = Arrays.copyOf(this.codes, grow(this.codes.length, needed));
+			}
+		}
+	}
+
+	/**
+	 * Colonne de valeurs gardées telles quelles (dates, BigDecimal, ...).
+	 */
+	public static final class ObjectColumn extends Column {
+
+		private Object[] values = new Object[0];
+
+		@Override
+		public boolean isNull(final int row) {
+			return this.values[row] == null;
+		}
+
+		@Override
+		public Object get(final int row) {
+			return this.values[row];
+		}
+
+		@Override
+		void add(final int row, final Object value) {
+			this.ensureCapacity(row + 1);
+			this.values[row] = value;
+		}
+
+		@Override
+		void addAll(final int row, final Column other, final int count) {
+			this.ensureCapacity(row + count);
+			System.arraycopy(((ObjectColumn) other).values, 0, this.values, row, count);
+		}
+
+		@Override
+		void trim(final int size) {
+			this.values = Arrays.copyOf(this.values, size);
+		}
+
+		private void ensureCapacity(final int needed) {
+			if (needed > this.values.length) {
+				this.values = Arrays.copyOf(this.values, grow(this.values.length, needed));
+			}
+		}
+	}
+
+}
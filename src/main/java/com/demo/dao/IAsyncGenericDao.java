@@ -0,0 +1,145 @@
+package com.demo.dao;
+
+import com.demo.conf.IBeanAsSearchCriteres;
+
+import javax.persistence.criteria.Order;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pendant asynchrone de {@link IGenericDao} : chaque appel est exécuté sur un
+ * pool de threads borné, avec son propre entity manager et sa propre
+ * transaction. Les entités retournées sont détachées.
+ *
+ * @param <PK>
+ *            : la clé primaire
+ * @param <ENTITY>
+ *            : l'entité
+ */
+public interface IAsyncGenericDao<ENTITY, PK extends Serializable> extends AutoCloseable {
+
+	/**
+	 * @see IGenericDao#create(Object)
+	 * @param newInstance
+	 *            l'entité à créer
+	 * @return l'entité créée, avec son identifiant
+	 */
+	CompletableFuture<ENTITY> create(ENTITY newInstance);
+
+	/**
+	 * @see IGenericDao#createAll(Collection)
+	 * @param newInstances
+	 *            les entités à créer
+	 * @return les entités créées, avec leurs identifiants
+	 */
+	CompletableFuture<Collection<ENTITY>> createAll(Collection<ENTITY> newInstances);
+
+	/**
+	 * @see IGenericDao#update(Object)
+	 * @param transientObject
+	 *            le bean à mettre à jour
+	 * @return l'entité mise à jour
+	 */
+	CompletableFuture<ENTITY> update(ENTITY transientObject);
+
+	/**
+	 * @see IGenericDao#updateAll(Collection)
+	 * @param transientObjects
+	 *            les beans à mettre à jour
+	 * @return les entités mises à jour
+	 */
+	CompletableFuture<List<ENTITY>> updateAll(Collection<ENTITY> transientObjects);
+
+	/**
+	 * @see IGenericDao#delete(Object)
+	 * @param persistentObject
+	 *            l'objet à supprimer
+	 * @return fin de la suppression
+	 */
+	CompletableFuture<Void> delete(ENTITY persistentObject);
+
+	/**
+	 * @see IGenericDao#deleteById(Serializable)
+	 * @param identifiant
+	 *            identifiant de l'objet à supprimer
+	 * @return fin de la suppression
+	 */
+	CompletableFuture<Void> deleteById(PK identifiant);
+
+	/**
+	 * @see IGenericDao#deleteAllById(Collection)
+	 * @param identifiants
+	 *            identifiants des objets à supprimer
+	 * @return nb elements supprimés
+	 */
+	CompletableFuture<Integer> deleteAllById(Collection<PK> identifiants);
+
+	/**
+	 * @see IGenericDao#read(Serializable)
+	 * @param id
+	 *            la clé primaire
+	 * @return l'entité, null si elle n'existe pas
+	 */
+	CompletableFuture<ENTITY> read(PK id);
+
+	/**
+	 * @see IGenericDao#readAllById(Collection)
+	 * @param ids
+	 *            les clés primaires
+	 * @return les entités dans l'ordre des identifiants
+	 */
+	CompletableFuture<List<ENTITY>> readAllById(Collection<PK> ids);
+
+	/**
+	 * @see IGenericDao#count()
+	 * @return le nombre d'objets
+	 */
+	CompletableFuture<Long> count();
+
+	/**
+	 * @see IGenericDao#readAll()
+	 * @return List des résultats
+	 */
+	CompletableFuture<List<ENTITY>> readAll();
+
+	/**
+	 * @see IGenericDao#readAll(Order...)
+	 * @param orders
+	 *            les order by
+	 * @return List des résultats
+	 */
+	CompletableFuture<List<ENTITY>> readAll(Order... orders);
+
+	/**
+	 * @see IGenericDao#findAllByAttributes(Map)
+	 * @param attributes
+	 *            : les attributes key = nom attribut, value = valeur
+	 * @return <code>List</code>
+	 */
+	CompletableFuture<List<ENTITY>> findAllByAttributes(Map<String, Object> attributes);
+
+	/**
+	 * @see IGenericDao#findAllByBeanCritere(IBeanAsSearchCriteres)
+	 * @param example
+	 *            : l'example.
+	 * @return <code>List</code>
+	 */
+	CompletableFuture<List<ENTITY>> findAllByBeanCritere(IBeanAsSearchCriteres<ENTITY> example);
+
+	/**
+	 * @see IGenericDao#deleteAll()
+	 * @return nb elements supprimés
+	 */
+	CompletableFuture<Integer> deleteAll();
+
+	/**
+	 * arrête le pool après l'exécution des appels déjà soumis. Les appels
+	 * soumis ensuite retournent un future en échec.
+	 */
+	@Override
+	void close();
+
+}
@@ -0,0 +1,90 @@
+package com.demo.dao;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * DAO de traitement en masse (ETL) sans contexte de persistance : pas de
+ * cache de premier niveau, pas de snapshot ni de dirty checking, pas de
+ * cascade. Chaque appel est une unité de travail, dans sa propre transaction ;
+ * les écritures partent en batch JDBC. Les entités retournées sont
+ * détachées.
+ *
+ * @param <PK>
+ *            : la clé primaire
+ * @param <ENTITY>
+ *            : l'entité
+ */
+public interface IBulkDao<ENTITY, PK extends Serializable> {
+
+	/**
+	 * insère une entité.
+	 *
+	 * @param newInstance
+	 *            : l'entité à insérer
+	 * @return l'identifiant de l'entité insérée
+	 */
+	PK insert(ENTITY newInstance);
+
+	/**
+	 * insère les entités en batch, dans une seule transaction.
+	 *
+	 * @param newInstances
+	 *            : les entités à insérer
+	 * @return le nombre d'entités insérées
+	 */
+	int insertAll(Collection<ENTITY> newInstances);
+
+	/**
+	 * met à jour toutes les colonnes d'une entité détachée.
+	 *
+	 * @param detachedObject
+	 *            : l'entité à mettre à jour
+	 */
+	void update(ENTITY detachedObject);
+
+	/**
+	 * met à jour les entités en batch, dans une seule transaction.
+	 *
+	 * @param detachedObjects
+	 *            : les entités à mettre à jour
+	 * @return le nombre d'entités mises à jour
+	 */
+	int updateAll(Collection<ENTITY> detachedObjects);
+
+	/**
+	 * supprime une entité.
+	 *
+	 * @param detachedObject
+	 *            : l'entité à supprimer
+	 */
+	void delete(ENTITY detachedObject);
+
+	/**
+	 * supprime les entités en batch, dans une seule transaction.
+	 *
+	 * @param detachedObjects
+	 *            : les entités à supprimer
+	 * @return le nombre d'entités supprimées
+	 */
+	int deleteAll(Collection<ENTITY> detachedObjects);
+
+	/**
+	 * lit une entité, sans passer par les caches.
+	 *
+	 * @param id
+	 *            : l'identifiant
+	 * @return l'entité, null si elle n'existe pas
+	 */
+	ENTITY get(PK id);
+
+	/**
+	 * parcourt toute la table via un curseur en avant seulement. Le stream doit
+	 * être fermé (try-with-resources) pour libérer le curseur et la session.
+	 *
+	 * @return <code>Stream</code> des entités
+	 */
+	Stream<ENTITY> scroll();
+
+}
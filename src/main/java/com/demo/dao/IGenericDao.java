@@ -2,10 +2,14 @@ package com.demo.dao;
 
 import com.demo.conf.IBeanAsSearchCriteres;
 
+import javax.persistence.Tuple;
 import javax.persistence.criteria.Order;
+import javax.persistence.metamodel.SingularAttribute;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Interface utilisant les types paramétrés afin d'abstraire les méthodes CRUD
@@ -28,6 +32,16 @@ public interface IGenericDao<ENTITY, PK extends Serializable> {
 	 */
 	void create(ENTITY newInstance);
 
+	/**
+	 * Création en masse : les INSERT sont regroupés en batch JDBC et le
+	 * contexte de persistance est flushé puis vidé toutes les
+	 * <code>batchSize</code> entités. Doit être appelé dans une transaction.
+	 *
+	 * @param newInstances
+	 *            les entités à créer
+	 */
+	void createAll(Collection<ENTITY> newInstances);
+
 	/**
 	 * Méthode de mise à jour d'un objet (paramétré).
 	 *
@@ -37,6 +51,56 @@ public interface IGenericDao<ENTITY, PK extends Serializable> {
 	 */
 	ENTITY update(ENTITY transientObject);
 
+	/**
+	 * Mise à jour en masse : les UPDATE sont regroupés en batch JDBC et le
+	 * contexte de persistance est flushé puis vidé toutes les
+	 * <code>batchSize</code> entités. Doit être appelé dans une transaction.
+	 *
+	 * @param transientObjects
+	 *            les beans à mettre à jour
+	 * @return les entités fusionnées (détachées si un clear a eu lieu)
+	 */
+	List<ENTITY> updateAll(Collection<ENTITY> transientObjects);
+
+	/**
+	 * Mise à jour partielle : un seul UPDATE des attributs donnés, sans
+	 * lecture préalable ni écriture des autres colonnes. Les chaînes vides
+	 * deviennent null comme pour update. Si l'entité est gérée par le
+	 * contexte de persistance, les nouvelles valeurs y sont reportées sans
+	 * relecture ; ses autres modifications en attente sont conservées. Une
+	 * version (@Version) numérique est incrémentée dans le même UPDATE, ce qui
+	 * garde le verrouillage optimiste : une copie périmée ne peut plus être
+	 * fusionnée. La version elle-même ne peut pas être donnée.
+	 *
+	 * @param identifiant
+	 *            : la clé primaire de l'objet à mettre à jour
+	 * @param attributes
+	 *            : les attributes key = nom attribut, value = nouvelle valeur
+	 * @return nb elements mis à jour (0 si l'objet n'existe pas)
+	 * @throws IllegalArgumentException
+	 *             si l'identifiant est null, si les attributs contiennent
+	 *             l'identifiant ou la version, ou si la version n'est pas
+	 *             numérique
+	 */
+	int updateAttributes(PK identifiant, Map<String, Object> attributes);
+
+	/**
+	 * Mise à jour partielle des seuls attributs qui diffèrent entre
+	 * <code>original</code> et <code>modified</code> (attributs simples et
+	 * associations vers un, hors identifiant et version), via
+	 * {@link #updateAttributes(Serializable, Map)}. Aucune requête n'est
+	 * envoyée si rien n'a changé.
+	 *
+	 * @param original
+	 *            : l'état connu de l'objet
+	 * @param modified
+	 *            : l'objet modifié, de même identifiant
+	 * @return nb elements mis à jour
+	 * @throws IllegalArgumentException
+	 *             si l'identifiant est null ou diffère entre les deux objets
+	 */
+	int updateChanged(ENTITY original, ENTITY modified);
+
 	/**
 	 * Méthode de suppression d'un enregistrement en base de données.
 	 *
@@ -46,13 +110,29 @@ public interface IGenericDao<ENTITY, PK extends Serializable> {
 	void delete(ENTITY persistentObject);
 
 	/**
-	 * Suppression d'un objet par son identifiant.
+	 * Suppression d'un objet par son identifiant : l'entité est chargée puis
+	 * supprimée, les cascades et callbacks JPA s'appliquent. Pour supprimer en
+	 * masse sans lecture, voir {@link #deleteAllById(Collection)}.
 	 *
 	 * @param identifiant
 	 *            Identifiant de l'objet à supprimer
+	 * @throws IllegalArgumentException
+	 *             si aucune entité n'a cet identifiant
 	 */
 	void deleteById(PK identifiant);
 
+	/**
+	 * Suppression en masse par identifiants : un DELETE ... WHERE id IN (...)
+	 * par paquet de <code>idBatchSize</code> identifiants, sans lecture
+	 * préalable. Les entités concernées sont détachées du contexte de
+	 * persistance. Les cascades et callbacks JPA ne sont pas appliqués.
+	 *
+	 * @param identifiants
+	 *            Identifiants des objets à supprimer
+	 * @return nb elements supprimés
+	 */
+	int deleteAllById(Collection<PK> identifiants);
+
 	/**
 	 * Méthode de lecture d'un enregistrement en base de données.
 	 *
@@ -62,6 +142,18 @@ public interface IGenericDao<ENTITY, PK extends Serializable> {
 	 */
 	ENTITY read(PK id);
 
+	/**
+	 * Lecture de plusieurs enregistrements par leurs identifiants, par paquets
+	 * de <code>idBatchSize</code> identifiants. Les entités déjà présentes
+	 * dans le contexte de persistance ne sont pas relues.
+	 *
+	 * @param ids
+	 *            les clés primaires
+	 * @return les entités dans l'ordre des identifiants, null pour un
+	 *         identifiant introuvable
+	 */
+	List<ENTITY> readAllById(Collection<PK> ids);
+
 	/**
 	 * Compte le nombre d'objets.
 	 *
@@ -86,6 +178,45 @@ public interface IGenericDao<ENTITY, PK extends Serializable> {
 	 */
 	List<ENTITY> readAll(Order... orders);
 
+	/**
+	 * parcourt tous les résultats via un curseur, sans les charger en mémoire.
+	 * Le stream doit être fermé (try-with-resources) pour libérer le curseur.
+	 *
+	 * @return <code>Stream</code> des résultats
+	 */
+	Stream<ENTITY> streamAll();
+
+	/**
+	 * lecture en masse de tous les résultats sous forme de colonnes, une par
+	 * attribut basique du metamodel, remplies directement depuis le curseur :
+	 * ni entité gérée, ni snapshot, ni identifiant boxé par ligne. À
+	 * privilégier pour les gros volumes en lecture seule (analytique).
+	 *
+	 * @return <code>ColumnarResult</code>
+	 */
+	ColumnarResult<ENTITY> readAllColumnar();
+
+	/**
+	 * pagination par clé (keyset) : retourne les <code>pageSize</code>
+	 * entités dont la clé de tri est strictement supérieure à
+	 * <code>lastSeen</code>, triées par cette clé. Contrairement à
+	 * l'offset, le coût ne dépend pas de la profondeur de la page.
+	 *
+	 * @param <K>
+	 *            : le type de la clé de tri
+	 * @param sortKey
+	 *            : attribut du metamodel servant de clé de tri, doit être
+	 *            unique (ex : <code>Person_.id</code>)
+	 * @param lastSeen
+	 *            : la clé de continuation de la page précédente, null pour la
+	 *            première page
+	 * @param pageSize
+	 *            : le nombre d'éléments par page
+	 * @return <code>KeysetPage</code>
+	 */
+	<K extends Comparable<? super K>> KeysetPage<ENTITY, K> readPage(SingularAttribute<? super ENTITY, K> sortKey,
+					K lastSeen, int pageSize);
+
 	/**
 	 * trouver toutes les entitys qui correspondent avec les attributes.
 	 * 
@@ -104,6 +235,80 @@ public interface IGenericDao<ENTITY, PK extends Serializable> {
 	 */
 	List<ENTITY> findAllByBeanCritere(IBeanAsSearchCriteres<ENTITY> example);
 
+	/**
+	 * parcourt les entity qui correspondent à l'example via un curseur. Le
+	 * stream doit être fermé (try-with-resources) pour libérer le curseur.
+	 *
+	 * @param example
+	 *            : l'example.
+	 * @return <code>Stream</code>
+	 */
+	Stream<ENTITY> streamByBeanCritere(IBeanAsSearchCriteres<ENTITY> example);
+
+	/**
+	 * projection de findAllByAttributes : seules les colonnes des attributs
+	 * sélectionnés sont lues, sans hydrater d'entité ni alimenter le contexte
+	 * de persistance. Chaque valeur est accessible par son index ou par le nom
+	 * de l'attribut (<code>tuple.get(Person_.name.getName())</code>).
+	 *
+	 * @param attributes
+	 *            : les attributes key = nom attribut, value = valeur
+	 * @param selections
+	 *            : les attributs à lire (ex :
+	 *            <code>Arrays.asList(Person_.id, Person_.name)</code>)
+	 * @return <code>List</code> des tuples
+	 */
+	List<Tuple> findTuplesByAttributes(Map<String, Object> attributes,
+					List<SingularAttribute<? super ENTITY, ?>> selections);
+
+	/**
+	 * projection de findAllByAttributes dans un DTO construit par le
+	 * constructeur de <code>dtoClass</code> prenant les attributs sélectionnés,
+	 * dans l'ordre.
+	 *
+	 * @param <DTO>
+	 *            : le type du DTO
+	 * @param attributes
+	 *            : les attributes key = nom attribut, value = valeur
+	 * @param dtoClass
+	 *            : la classe du DTO, avec un constructeur public adapté
+	 * @param selections
+	 *            : les attributs passés au constructeur
+	 * @return <code>List</code> des DTO
+	 */
+	<DTO> List<DTO> findDtosByAttributes(Map<String, Object> attributes, Class<DTO> dtoClass,
+					List<SingularAttribute<? super ENTITY, ?>> selections);
+
+	/**
+	 * projection de findAllByBeanCritere en tuples.
+	 *
+	 * @see #findTuplesByAttributes(Map, List)
+	 * @param example
+	 *            : l'example.
+	 * @param selections
+	 *            : les attributs à lire
+	 * @return <code>List</code> des tuples
+	 */
+	List<Tuple> findTuplesByBeanCritere(IBeanAsSearchCriteres<ENTITY> example,
+					List<SingularAttribute<? super ENTITY, ?>> selections);
+
+	/**
+	 * projection de findAllByBeanCritere dans un DTO.
+	 *
+	 * @see #findDtosByAttributes(Map, Class, List)
+	 * @param <DTO>
+	 *            : le type du DTO
+	 * @param example
+	 *            : l'example.
+	 * @param dtoClass
+	 *            : la classe du DTO, avec un constructeur public adapté
+	 * @param selections
+	 *            : les attributs passés au constructeur
+	 * @return <code>List</code> des DTO
+	 */
+	<DTO> List<DTO> findDtosByBeanCritere(IBeanAsSearchCriteres<ENTITY> example, Class<DTO> dtoClass,
+					List<SingularAttribute<? super ENTITY, ?>> selections);
+
 	/**
 	 * detache l'entity de la session hibernate.
 	 *
@@ -0,0 +1,63 @@
+package com.demo.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page de résultats obtenue par pagination par clé (keyset / seek). La clé de
+ * continuation est la valeur de la clé de tri du dernier élément de la page, à
+ * repasser tel quel pour obtenir la page suivante.
+ *
+ * @param <ENTITY>
+ *            : l'entité
+ * @param <K>
+ *            : le type de la clé de tri
+ */
+public final class KeysetPage<ENTITY, K> {
+
+	/**
+	 * les éléments de la page.
+	 */
+	private final List<ENTITY> content;
+
+	/**
+	 * la clé de continuation, null s'il n'y a pas de page suivante.
+	 */
+	private final K nextKey;
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param content
+	 *            : les éléments de la page
+	 * @param nextKey
+	 *            : la clé de continuation, null s'il n'y a pas de page suivante
+	 */
+	public KeysetPage(final List<ENTITY> content, final K nextKey) {
+		this.content = Collections.unmodifiableList(content);
+		this.nextKey = nextKey;
+	}
+
+	/**
+	 * @return les éléments de la page
+	 */
+	public List<ENTITY> getContent() {
+		return this.content;
+	}
+
+	/**
+	 * @return la clé à passer pour lire la page suivante, null si c'est la
+	 *         dernière page
+	 */
+	public K getNextKey() {
+		return this.nextKey;
+	}
+
+	/**
+	 * @return <code>true</code> s'il existe une page suivante
+	 */
+	public boolean hasNext() {
+		return this.nextKey != null;
+	}
+
+}
@@ -1,20 +1,47 @@
 package com.demo.dao.impl;
 
 import com.demo.conf.IBeanAsSearchCriteres;
+import com.demo.conf.IEntityManagerProvider;
+import com.demo.dao.ColumnarResult;
 import com.demo.dao.IGenericDao;
+import com.demo.dao.KeysetPage;
 import com.demo.conf.exception.BeanTechnicalException;
 import com.demo.conf.exception.DataAccessException;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.MultiIdentifierLoadAccess;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.VersionType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.*;
 import javax.persistence.criteria.*;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
 import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *
@@ -30,21 +57,80 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 */
 	protected static final String JPA_WILDCARD = "%";
 
+	/**
+	 * taille par défaut des batchs JDBC pour createAll / updateAll.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 50;
+
+	/**
+	 * fetch size JDBC par défaut des streams.
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 500;
+
+	/**
+	 * nombre d'identifiants par clause IN par défaut.
+	 */
+	public static final int DEFAULT_ID_BATCH_SIZE = 1000;
+
 	/**
 	 * Le logger.
 	 */
 	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractGenericDaoImpl.class.getName());
 
 	/**
-	 * La session factory d'hibernate.
+	 * les requêtes de findAllByAttributes, partagées par tous les DAO.
+	 */
+	private static final QueryTemplateCache QUERY_TEMPLATE_CACHE = new QueryTemplateCache();
+
+	/**
+	 * fournit l'entity manager du thread courant.
 	 */
-	private EntityManager em;
+	private IEntityManagerProvider entityManagerProvider;
 
 	/**
 	 * la class sur laquelle sont effectuée les requétes.
 	 */
 	private Class<ENTITY> entityClass;
 
+	/**
+	 * nombre d'entités par batch JDBC (et entre deux flush/clear).
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * fetch size JDBC des curseurs ouverts par les streams.
+	 */
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	/**
+	 * nombre d'identifiants par clause IN, pour respecter la limite de
+	 * paramètres des drivers.
+	 */
+	private int idBatchSize = DEFAULT_ID_BATCH_SIZE;
+
+	/**
+	 * true si les lectures de ce DAO passent par le cache de second niveau et
+	 * le cache de requêtes.
+	 */
+	private boolean cacheable;
+
+	/**
+	 * true si les lectures de ce DAO chargent les entités en lecture seule.
+	 */
+	private boolean readOnly;
+
+	/**
+	 * garde sur la taille du contexte de persistance, null si désactivé.
+	 */
+	private PersistenceContextGuard persistenceContextGuard;
+
+	/**
+	 * la requête de readAllColumnar, construite au premier appel. Hors du
+	 * cache des requêtes de findAllByAttributes pour ne pas fausser ses
+	 * statistiques.
+	 */
+	private volatile String columnarQuery;
+
 	/**
 	 * Constructeur.
 	 *
@@ -68,10 +154,36 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	public final void create(final ENTITY newInstance) {
 		try {
 			nullifyEmptyStrings(newInstance);
-			this.em.persist(newInstance);
+			this.getEntityManager().persist(newInstance);
+			this.guardPersistenceContext();
+		} catch (final DataAccessException | BeanTechnicalException ex) {
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			throw ex;
+		}
+	}
+
+	@Override
+	public final void createAll(final Collection<ENTITY> newInstances) {
+		final EntityManager em = this.getEntityManager();
+		final Session session = em.unwrap(Session.class);
+		final Integer previousBatchSize = session.getJdbcBatchSize();
+		session.setJdbcBatchSize(this.batchSize);
+		try {
+			int count = 0;
+			for (final ENTITY newInstance : newInstances) {
+				nullifyEmptyStrings(newInstance);
+				em.persist(newInstance);
+				if (++count % this.batchSize == 0) {
+					this.flushAndClear();
+				}
+			}
+			em.flush();
+			this.guardPersistenceContext();
 		} catch (final DataAccessException | BeanTechnicalException ex) {
 			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
 			throw ex;
+		} finally {
+			session.setJdbcBatchSize(previousBatchSize);
 		}
 	}
 
@@ -79,21 +191,228 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	public final ENTITY update(final ENTITY transientObject) {
 		try {
 			nullifyEmptyStrings(transientObject);
-			return this.em.merge(transientObject);
+			final ENTITY merged = this.getEntityManager().merge(transientObject);
+			this.guardPersistenceContext();
+			return merged;
+		} catch (final DataAccessException | BeanTechnicalException ex) {
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(ex.getMessage(), ex);
+			}
+			throw ex;
+		}
+
+	}
+
+	@Override
+	public final List<ENTITY> updateAll(final Collection<ENTITY> transientObjects) {
+		final EntityManager em = this.getEntityManager();
+		final Session session = em.unwrap(Session.class);
+		final Integer previousBatchSize = session.getJdbcBatchSize();
+		session.setJdbcBatchSize(this.batchSize);
+		try {
+			final List<ENTITY> merged = new ArrayList<>(transientObjects.size());
+			for (final ENTITY transientObject : transientObjects) {
+				nullifyEmptyStrings(transientObject);
+				merged.add(em.merge(transientObject));
+				if (merged.size() % this.batchSize == 0) {
+					this.flushAndClear();
+				}
+			}
+			em.flush();
+			this.guardPersistenceContext();
+			return merged;
 		} catch (final DataAccessException | BeanTechnicalException ex) {
 			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
 			if (LOGGER.isDebugEnabled()) {
 				LOGGER.debug(ex.getMessage(), ex);
 			}
 			throw ex;
+		} finally {
+			session.setJdbcBatchSize(previousBatchSize);
+		}
+	}
+
+	@Override
+	public final int updateAttributes(final PK identifiant, final Map<String, Object> attributes) {
+		if (identifiant == null) {
+			throw new IllegalArgumentException("L'identifiant de PK est NULL pour le updateAttributes");
+		}
+		if (attributes.isEmpty()) {
+			return 0;
+		}
+		final SingularAttribute<? super ENTITY, ?> idAttribute = this.getIdAttribute();
+		if (attributes.containsKey(idAttribute.getName())) {
+			throw new IllegalArgumentException("L'identifiant ne peut pas être mis à jour : " + idAttribute.getName());
+		}
+		final EntityType<ENTITY> entityType = this.getEntityManager().getMetamodel().entity(this.entityClass);
+		final SingularAttribute<? super ENTITY, ?> versionAttribute = getNumericVersionAttribute(entityType);
+		if (versionAttribute != null && attributes.containsKey(versionAttribute.getName())) {
+			throw new IllegalArgumentException("La version ne peut pas être mise à jour : " + versionAttribute.getName());
+		}
+		try {
+			final StringFieldNormalizer normalizer = StringFieldNormalizer.of(this.entityClass);
+			final CriteriaBuilder cb = this.getCriteriaBuilder();
+			final CriteriaUpdate<ENTITY> cu = cb.createCriteriaUpdate(this.entityClass);
+			final Root<ENTITY> root = cu.from(this.entityClass);
+			// des paramètres nommés dans l'ordre des noms : une même forme donne
+			// la même requête, dont hibernate réutilise le plan
+			final Map<String, Object> params = new HashMap<>();
+			final Map<String, Object> values = new HashMap<>();
+			int index = 0;
+			for (final String name : new TreeSet<>(attributes.keySet())) {
+				final String param = "p" + index++;
+				final Path<Object> path = root.get(name);
+				@SuppressWarnings("unchecked")
+				final Expression<Object> value = (Expression<Object>) cb.parameter(
+								entityType.getSingularAttribute(name).getJavaType(), param);
+				cu.<Object> set(path, value);
+				params.put(param, normalizer.nullifyIfEmpty(attributes.get(name)));
+				values.put(name, params.get(param));
+			}
+			if (versionAttribute != null) {
+				// incrément dans le même UPDATE : un merge d'une copie périmée échouera
+				final Path<Number> version = root.get(versionAttribute.getName());
+				cu.set(version, cb.sum(version, 1));
+			}
+			cu.where(cb.equal(root.get(idAttribute.getName()), cb.parameter(idAttribute.getJavaType(), "id")));
+			params.put("id", identifiant);
+			final int updated = this.updateByCriteria(cu, params);
+			if (updated > 0) {
+				this.applyToManaged(identifiant, values);
+			}
+			return updated;
+		} catch (final DataAccessException ex) {
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(ex.getMessage(), ex);
+			}
+			throw ex;
+		}
+	}
+
+	@Override
+	public final int updateChanged(final ENTITY original, final ENTITY modified) {
+		final PersistenceUnitUtil util = this.getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil();
+		@SuppressWarnings("unchecked")
+		final PK identifiant = (PK) util.getIdentifier(modified);
+		if (identifiant == null) {
+			throw new IllegalArgumentException("L'identifiant de PK est NULL pour le updateChanged");
+		}
+		if (!identifiant.equals(util.getIdentifier(original))) {
+			throw new IllegalArgumentException("original et modified n'ont pas le même identifiant");
+		}
+		final EntityType<ENTITY> entityType = this.getEntityManager().getMetamodel().entity(this.entityClass);
+		final Map<String, Object> changed = new HashMap<>();
+		for (final SingularAttribute<? super ENTITY, ?> attribute : entityType.getSingularAttributes()) {
+			if (attribute.isId() || attribute.isVersion()) {
+				continue;
+			}
+			final Object value = readAttribute(modified, attribute);
+			if (!Objects.equals(readAttribute(original, attribute), value)) {
+				changed.put(attribute.getName(), value);
+			}
+		}
+		return this.updateAttributes(identifiant, changed);
+	}
+
+	/**
+	 * retourne l'attribut version (@Version) de l'entité.
+	 *
+	 * @param entityType
+	 *            : l'entité dans le metamodel
+	 * @return l'attribut version, null si l'entité n'est pas versionnée
+	 * @throws IllegalArgumentException
+	 *             si la version n'est pas numérique (timestamp) : elle ne peut
+	 *             pas être incrémentée par une criteria update
+	 */
+	private SingularAttribute<? super ENTITY, ?> getNumericVersionAttribute(final EntityType<ENTITY> entityType) {
+		if (!entityType.hasVersionAttribute()) {
+			return null;
+		}
+		for (final SingularAttribute<? super ENTITY, ?> attribute : entityType.getSingularAttributes()) {
+			if (attribute.isVersion()) {
+				final Class<?> type = attribute.getJavaType();
+				if (type == int.class || type == long.class || type == short.class || type == Integer.class
+								|| type == Long.class || type == Short.class) {
+					return attribute;
+				}
+				throw new IllegalArgumentException("Mise à jour partielle impossible avec une version non numérique : "
+								+ attribute.getName());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * reporte une mise à jour faite en base par requête sur l'entité si elle
+	 * est gérée par le contexte de persistance : les valeurs, et la version
+	 * incrémentée, sont copiées sur l'instance et sur son état chargé, sans
+	 * relecture. Les autres modifications en attente sur l'instance restent à
+	 * flusher.
+	 *
+	 * @param identifiant
+	 *            : l'identifiant
+	 * @param values
+	 *            : les valeurs écrites, par nom d'attribut
+	 */
+	private void applyToManaged(final PK identifiant, final Map<String, Object> values) {
+		final SessionImplementor session = this.getEntityManager().unwrap(SessionImplementor.class);
+		final EntityPersister persister = session.getFactory().getMetamodel().entityPersister(this.entityClass);
+		final PersistenceContext persistenceContext = session.getPersistenceContext();
+		final Object managed = persistenceContext.getEntity(session.generateEntityKey(identifiant, persister));
+		if (managed == null) {
+			return;
 		}
+		final EntityEntry entry = persistenceContext.getEntry(managed);
+		// null pour une entité en lecture seule : pas de dirty-checking
+		final Object[] loadedState = entry.getLoadedState();
+		for (final Map.Entry<String, Object> value : values.entrySet()) {
+			final int property = persister.getEntityMetamodel().getPropertyIndex(value.getKey());
+			persister.setPropertyValue(managed, property, value.getValue());
+			if (loadedState != null) {
+				loadedState[property] = value.getValue();
+			}
+		}
+		if (persister.isVersioned()) {
+			// le prochain flush de l'instance vérifiera la version écrite en base
+			@SuppressWarnings("unchecked")
+			final VersionType<Object> versionType = persister.getVersionType();
+			final Object nextVersion = versionType.next(entry.getVersion(), session);
+			if (loadedState != null) {
+				loadedState[persister.getVersionProperty()] = nextVersion;
+				entry.postUpdate(managed, loadedState, nextVersion);
+			} else {
+				persister.setPropertyValue(managed, persister.getVersionProperty(), nextVersion);
+			}
+		}
+	}
+
+	/**
+	 * applique le garde sur la taille du contexte de persistance s'il y en a
+	 * un.
+	 */
+	private void guardPersistenceContext() {
+		if (this.persistenceContextGuard != null) {
+			this.persistenceContextGuard.check(this.getEntityManager());
+		}
+	}
 
+	/**
+	 * envoie les batchs en attente puis détache toutes les entités du contexte
+	 * de persistance.
+	 */
+	private void flushAndClear() {
+		final EntityManager em = this.getEntityManager();
+		em.flush();
+		em.clear();
 	}
 
 	@Override
 	public final void delete(final ENTITY persistentObject) {
 		try {
-			this.em.remove(this.em.contains(persistentObject) ? persistentObject : this.em.merge(persistentObject));
+			final EntityManager em = this.getEntityManager();
+			em.remove(em.contains(persistentObject) ? persistentObject : em.merge(persistentObject));
 		} catch (final DataAccessException ex) {
 			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
 			if (LOGGER.isDebugEnabled()) {
@@ -105,9 +424,43 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 
 	@Override
 	public final void deleteById(final PK identifiant) {
+		if (identifiant == null) {
+			throw new IllegalArgumentException("L'identifiant de PK est NULL pour le deleteById");
+		}
+		try {
+			// chemin entité : cascades et callbacks JPA, contrairement à deleteAllById
+			final EntityManager em = this.getEntityManager();
+			final ENTITY obj = em.find(this.entityClass, identifiant);
+			if (obj == null) {
+				throw new IllegalArgumentException("Pas d'entité " + this.entityClass.getSimpleName()
+								+ " d'identifiant " + identifiant + " pour le deleteById");
+			}
+			em.remove(obj);
+		} catch (final DataAccessException ex) {
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(ex.getMessage(), ex);
+			}
+			throw ex;
+		}
+	}
+
+	@Override
+	public final int deleteAllById(final Collection<PK> identifiants) {
 		try {
-			final ENTITY obj = this.read(identifiant);
-			this.delete(obj);
+			final CriteriaBuilder cb = this.getEntityManager().getCriteriaBuilder();
+			final CriteriaDelete<ENTITY> cd = cb.createCriteriaDelete(this.entityClass);
+			final Root<ENTITY> root = cd.from(this.entityClass);
+			@SuppressWarnings("rawtypes")
+			final ParameterExpression<Collection> ids = cb.parameter(Collection.class, "ids");
+			cd.where(root.get(this.getIdAttribute()).in(ids));
+
+			int deleted = 0;
+			for (final List<PK> chunk : partition(identifiants, this.idBatchSize)) {
+				this.detachManaged(chunk);
+				deleted += this.getEntityManager().createQuery(cd).setParameter(ids.getName(), chunk).executeUpdate();
+			}
+			return deleted;
 		} catch (final DataAccessException ex) {
 			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
 			if (LOGGER.isDebugEnabled()) {
@@ -117,13 +470,97 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 		}
 	}
 
+	/**
+	 * détache du contexte de persistance les entités déjà chargées parmi les
+	 * identifiants, sans requête.
+	 *
+	 * @param identifiants
+	 *            : les identifiants
+	 */
+	private void detachManaged(final Collection<PK> identifiants) {
+		final EntityManager em = this.getEntityManager();
+		final SessionImplementor session = em.unwrap(SessionImplementor.class);
+		final EntityPersister persister = session.getFactory().getMetamodel().entityPersister(this.entityClass);
+		for (final PK identifiant : identifiants) {
+			final Object managed = session.getPersistenceContext()
+							.getEntity(session.generateEntityKey(identifiant, persister));
+			if (managed != null) {
+				em.detach(managed);
+			}
+		}
+	}
+
+	/**
+	 * @return l'attribut identifiant de l'entité dans le metamodel
+	 */
+	private SingularAttribute<? super ENTITY, ?> getIdAttribute() {
+		final EntityType<ENTITY> entityType = this.getEntityManager().getMetamodel().entity(this.entityClass);
+		for (final SingularAttribute<? super ENTITY, ?> attribute : entityType.getSingularAttributes()) {
+			if (attribute.isId()) {
+				return attribute;
+			}
+		}
+		throw new IllegalStateException("Pas d'identifiant simple pour " + this.entityClass.getName());
+	}
+
+	/**
+	 * découpe une collection en listes d'au plus <code>size</code> éléments.
+	 *
+	 * @param <T>
+	 *            : le type des éléments
+	 * @param values
+	 *            : la collection
+	 * @param size
+	 *            : la taille des paquets
+	 * @return les paquets
+	 */
+	private static <T> List<List<T>> partition(final Collection<T> values, final int size) {
+		final List<T> list = new ArrayList<>(values);
+		final List<List<T>> chunks = new ArrayList<>();
+		for (int from = 0; from < list.size(); from += size) {
+			chunks.add(list.subList(from, Math.min(from + size, list.size())));
+		}
+		return chunks;
+	}
+
 	@Override
 	public final ENTITY read(final PK id) {
 		if (id == null) {
 			throw new IllegalArgumentException("L'identifiant de PK est NULL pour le read");
 		}
 		try {
-			return this.em.find(this.entityClass, id);
+			if (this.readOnly) {
+				return this.executeReadOnly(
+								() -> this.getReadEntityManager().find(this.entityClass, id, this.getCacheProperties()));
+			}
+			return this.getReadEntityManager().find(this.entityClass, id, this.getCacheProperties());
+		} catch (final DataAccessException ex) {
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug(ex.getMessage(), ex);
+			}
+			throw ex;
+		}
+	}
+
+	@Override
+	public final List<ENTITY> readAllById(final Collection<PK> ids) {
+		// copie d'abord : contains(null) lève une NPE sur un TreeSet ou un Set.of
+		final List<PK> toLoad = new ArrayList<>(ids);
+		if (toLoad.contains(null)) {
+			throw new IllegalArgumentException("Un identifiant de PK est NULL pour le readAllById");
+		}
+		try {
+			final MultiIdentifierLoadAccess<ENTITY> loadAccess = this.getReadEntityManager().unwrap(Session.class)
+							.byMultipleIds(this.entityClass)
+							.withBatchSize(this.idBatchSize)
+							.enableSessionCheck(true)
+							.enableOrderedReturn(true)
+							.with(this.cacheable ? CacheMode.NORMAL : CacheMode.IGNORE);
+			if (this.readOnly) {
+				return this.executeReadOnly(() -> loadAccess.multiLoad(toLoad));
+			}
+			return loadAccess.multiLoad(toLoad);
 		} catch (final DataAccessException ex) {
 			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
 			if (LOGGER.isDebugEnabled()) {
@@ -135,25 +572,96 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 
 	@Override
 	public final long count() {
-		final CriteriaBuilder cb = this.em.getCriteriaBuilder();
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
 		final CriteriaQuery<Long> cq = cb.createQuery(Long.class);
 		final Root<ENTITY> c = cq.from(this.entityClass);
 		cq.select(cb.count(c));
-		return this.em.createQuery(cq).getSingleResult();
+		return this.createQuery(cq).getSingleResult();
 	}
 
 	@Override
 	public List<ENTITY> readAll() {
-		final CriteriaBuilder cb = this.em.getCriteriaBuilder();
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
 		final CriteriaQuery<ENTITY> cq = cb.createQuery(this.entityClass);
 		final Root<ENTITY> c = cq.from(this.entityClass);
 		cq.select(c);
 		return this.findAllByCriteriaQuery(cq, null, null);
 	}
 
+	@Override
+	public Stream<ENTITY> streamAll() {
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+		final CriteriaQuery<ENTITY> cq = cb.createQuery(this.entityClass);
+		final Root<ENTITY> c = cq.from(this.entityClass);
+		cq.select(c);
+		return this.streamByCriteriaQuery(cq);
+	}
+
+	@Override
+	public ColumnarResult<ENTITY> readAllColumnar() {
+		final EntityType<ENTITY> entityType = this.getReadEntityManager().getMetamodel().entity(this.entityClass);
+		final List<SingularAttribute<? super ENTITY, ?>> attributes = basicAttributes(entityType);
+		// projection JPQL plutôt que criteria : le multiselect criteria passe
+		// chaque ligne par un transformer qui l'enveloppe dans un autre tableau
+		String jpql = this.columnarQuery;
+		if (jpql == null) {
+			final StringBuilder select = new StringBuilder("select ");
+			for (int i = 0; i < attributes.size(); i++) {
+				select.append(i == 0 ? "e." : ", e.").append(attributes.get(i).getName());
+			}
+			jpql = select.append(" from ").append(entityType.getName()).append(" e").toString();
+			// deux threads peuvent la construire ensemble : même résultat
+			this.columnarQuery = jpql;
+		}
+		final org.hibernate.query.Query<?> query = this.getReadEntityManager().unwrap(Session.class).createQuery(jpql);
+		query.setFetchSize(this.fetchSize);
+		query.setReadOnly(true);
+		final ColumnarResult.Builder<ENTITY> builder = ColumnarResult.builder(attributes);
+		try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+			while (results.next()) {
+				builder.addRow(results.get());
+			}
+		} catch (final DataAccessException | BeanTechnicalException ex) {
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			throw ex;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * retourne les attributs basiques de l'entité : l'identifiant d'abord, puis
+	 * les autres par nom pour un ordre de colonnes stable.
+	 *
+	 * @param <ENTITY>
+	 *            : l'entité
+	 * @param entityType
+	 *            : l'entité dans le metamodel
+	 * @return les attributs basiques
+	 */
+	static <ENTITY> List<SingularAttribute<? super ENTITY, ?>> basicAttributes(final EntityType<ENTITY> entityType) {
+		final List<SingularAttribute<? super ENTITY, ?>> attributes = new ArrayList<>();
+		for (final SingularAttribute<? super ENTITY, ?> attribute : entityType.getSingularAttributes()) {
+			if (attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC) {
+				attributes.add(attribute);
+			}
+		}
+		attributes.sort((a, b) -> a.isId() != b.isId() ? (a.isId() ? -1 : 1) : a.getName().compareTo(b.getName()));
+		return attributes;
+	}
+
+	@Override
+	public <K extends Comparable<? super K>> KeysetPage<ENTITY, K> readPage(
+					final SingularAttribute<? super ENTITY, K> sortKey, final K lastSeen, final int pageSize) {
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+		final CriteriaQuery<ENTITY> cq = cb.createQuery(this.entityClass);
+		final Root<ENTITY> c = cq.from(this.entityClass);
+		cq.select(c);
+		return this.findPageByCriteriaQuery(cq, c, sortKey, lastSeen, pageSize);
+	}
+
 	@Override
 	public int deleteAll() {
-		final CriteriaBuilder cb = this.em.getCriteriaBuilder();
+		final CriteriaBuilder cb = this.getEntityManager().getCriteriaBuilder();
 		final CriteriaDelete<ENTITY> cd = cb.createCriteriaDelete(this.entityClass);
 		@SuppressWarnings("unused")
 		final Root<ENTITY> root = cd.from(this.entityClass);
@@ -162,31 +670,212 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 
 	@Override
 	public final List<ENTITY> findAllByAttributes(final Map<String, Object> attributes) {
-		// set up the Criteria query
-		final CriteriaBuilder cb = this.em.getCriteriaBuilder();
-		final CriteriaQuery<ENTITY> cq = cb.createQuery(this.getEntityClass());
-		final Root<ENTITY> root = cq.from(this.getEntityClass());
-
-		final List<Predicate> predicates = new ArrayList<>();
-		for (final String s : attributes.keySet()) {
-			if (root.get(s) != null) {
-				predicates.add(cb.equal(root.get(s), attributes.get(s)));
-			}
+		// un nom de paramètre par attribut, dans l'ordre de la forme
+		final TreeSet<String> names = new TreeSet<>(attributes.keySet());
+		final Map<String, Object> params = new HashMap<>();
+		int index = 0;
+		for (final String name : names) {
+			params.put("p" + index++, attributes.get(name));
 		}
-		cq.where(predicates.toArray(new Predicate[] {}));
 
-		return this.findAllByCriteriaQuery(cq);
+		final String jpql = QUERY_TEMPLATE_CACHE.get(this.entityClass.getName() + names,
+						() -> this.compileFindAllByAttributes(names));
+		return this.getTypedQueryWithParams(jpql, params, this.entityClass).getResultList();
+	}
+
+	/**
+	 * construit la requête JPQL paramétrée de findAllByAttributes : un
+	 * paramètre <code>:pN</code> par attribut, dans l'ordre des noms.
+	 *
+	 * @param names
+	 *            : les noms des attributs, triés
+	 * @return la requête JPQL
+	 */
+	private String compileFindAllByAttributes(final Collection<String> names) {
+		final EntityType<ENTITY> entityType = this.getReadEntityManager().getMetamodel().entity(this.entityClass);
+		final StringBuilder jpql = new StringBuilder("select e from ").append(entityType.getName()).append(" e");
+		int index = 0;
+		for (final String name : names) {
+			// valide le nom comme le faisait root.get(name)
+			entityType.getAttribute(name);
+			jpql.append(index == 0 ? " where " : " and ");
+			jpql.append("e.").append(name).append(" = :p").append(index++);
+		}
+		return jpql.toString();
 	}
 
 	@Override
 	public final List<ENTITY> findAllByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example) {
-		final CriteriaBuilder cb = this.getCriteriaBuilder();
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+		final CriteriaQuery<ENTITY> cq = cb.createQuery(this.entityClass);
+		final Root<ENTITY> root = cq.from(this.entityClass);
+		cq.where(example.toPredicate(cb, root));
+		return this.findAllByCriteriaQuery(cq);
+	}
+
+	@Override
+	public final Stream<ENTITY> streamByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example) {
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
 		final CriteriaQuery<ENTITY> cq = cb.createQuery(this.entityClass);
 		final Root<ENTITY> root = cq.from(this.entityClass);
 		cq.where(example.toPredicate(cb, root));
+		return this.streamByCriteriaQuery(cq);
+	}
+
+	@Override
+	public final List<Tuple> findTuplesByAttributes(final Map<String, Object> attributes,
+					final List<SingularAttribute<? super ENTITY, ?>> selections) {
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+		final CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+		final Root<ENTITY> root = cq.from(this.entityClass);
+		cq.multiselect(toSelections(root, selections));
+		final Map<ParameterExpression<Object>, Object> params = new HashMap<>();
+		cq.where(toPredicates(cb, root, attributes, params));
+		return this.findAllByCriteriaQueryWithParams(cq, params);
+	}
+
+	@Override
+	public final <DTO> List<DTO> findDtosByAttributes(final Map<String, Object> attributes,
+					final Class<DTO> dtoClass, final List<SingularAttribute<? super ENTITY, ?>> selections) {
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+		final CriteriaQuery<DTO> cq = cb.createQuery(dtoClass);
+		final Root<ENTITY> root = cq.from(this.entityClass);
+		cq.select(cb.construct(dtoClass, toSelections(root, selections)));
+		final Map<ParameterExpression<Object>, Object> params = new HashMap<>();
+		cq.where(toPredicates(cb, root, attributes, params));
+		return this.findAllByCriteriaQueryWithParams(cq, params);
+	}
+
+	@Override
+	public final List<Tuple> findTuplesByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example,
+					final List<SingularAttribute<? super ENTITY, ?>> selections) {
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+		final CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+		final Root<ENTITY> root = cq.from(this.entityClass);
+		cq.multiselect(toSelections(root, selections));
+		cq.where(example.toPredicate(cb, root));
+		return this.findAllByCriteriaQuery(cq);
+	}
+
+	@Override
+	public final <DTO> List<DTO> findDtosByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example,
+					final Class<DTO> dtoClass, final List<SingularAttribute<? super ENTITY, ?>> selections) {
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+		final CriteriaQuery<DTO> cq = cb.createQuery(dtoClass);
+		final Root<ENTITY> root = cq.from(this.entityClass);
+		cq.select(cb.construct(dtoClass, toSelections(root, selections)));
+		cq.where(example.toPredicate(cb, root));
 		return this.findAllByCriteriaQuery(cq);
 	}
 
+	/**
+	 * transforme les attributs sélectionnés en colonnes de la projection,
+	 * nommées comme l'attribut.
+	 *
+	 * @param root
+	 *            : le root
+	 * @param selections
+	 *            : les attributs sélectionnés
+	 * @return les colonnes de la projection
+	 */
+	private static Selection<?>[] toSelections(final Root<?> root,
+					final List<? extends SingularAttribute<?, ?>> selections) {
+		if (selections == null || selections.isEmpty()) {
+			throw new IllegalArgumentException("Au moins un attribut doit être sélectionné pour la projection");
+		}
+		final Selection<?>[] columns = new Selection<?>[selections.size()];
+		for (int i = 0; i < columns.length; i++) {
+			final String name = selections.get(i).getName();
+			columns[i] = root.get(name).alias(name);
+		}
+		return columns;
+	}
+
+	/**
+	 * transforme les attributs recherchés en restrictions d'égalité sur des
+	 * paramètres, comme findAllByAttributes : les valeurs ne sont pas
+	 * inlinées dans le SQL, qui reste le même d'un appel à l'autre.
+	 *
+	 * @param cb
+	 *            : le criteria builder
+	 * @param root
+	 *            : le root
+	 * @param attributes
+	 *            : les attributes key = nom attribut, value = valeur
+	 * @param params
+	 *            : reçoit la valeur de chaque paramètre créé
+	 * @return les restrictions
+	 */
+	private static Predicate[] toPredicates(final CriteriaBuilder cb, final Root<?> root,
+					final Map<String, Object> attributes, final Map<ParameterExpression<Object>, Object> params) {
+		final Predicate[] predicates = new Predicate[attributes.size()];
+		int index = 0;
+		for (final Map.Entry<String, Object> attribute : attributes.entrySet()) {
+			final ParameterExpression<Object> parameter = cb.parameter(Object.class);
+			predicates[index++] = cb.equal(root.get(attribute.getKey()), parameter);
+			params.put(parameter, attribute.getValue());
+		}
+		return predicates;
+	}
+
+	/**
+	 * exécute la criteriaQuery avec la valeur de ses paramètres.
+	 *
+	 * @param <C>
+	 *            : la classe retour
+	 * @param cq
+	 *            : la criteriaQuery
+	 * @param params
+	 *            : la valeur de chaque paramètre
+	 * @return <code>List</code>
+	 */
+	private <C> List<C> findAllByCriteriaQueryWithParams(final CriteriaQuery<C> cq,
+					final Map<ParameterExpression<Object>, Object> params) {
+		final TypedQuery<C> query = this.createQuery(cq);
+		params.forEach(query::setParameter);
+		return query.getResultList();
+	}
+
+	/**
+	 * parcourt les résultats de la criteriaQuery via un curseur en avant
+	 * seulement. Les entités chargées par le curseur le sont en lecture seule
+	 * et détachées au fur et à mesure ; celles que le contexte de persistance
+	 * gérait déjà restent gérées. Le stream doit être fermé pour libérer le
+	 * curseur.
+	 *
+	 * @param <C>
+	 *            : la classe retour
+	 * @param cq
+	 *            : la criteriaQuery
+	 * @return <code>Stream</code>
+	 */
+	protected final <C> Stream<C> streamByCriteriaQuery(final CriteriaQuery<C> cq) {
+		@SuppressWarnings("unchecked")
+		final org.hibernate.query.Query<C> query = this.createQuery(cq).unwrap(org.hibernate.query.Query.class);
+		query.setFetchSize(this.fetchSize);
+		query.setReadOnly(true);
+		// un curseur ne passe pas par le cache de requêtes
+		query.setCacheable(false);
+		final ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+		final EntityManager detachFrom = this.isEntity(cq.getResultType()) ? this.getReadEntityManager() : null;
+		return StreamSupport.stream(new ScrollableResultsSpliterator<C>(results, detachFrom), false)
+						.onClose(results::close);
+	}
+
+	/**
+	 * @param clazz
+	 *            : une classe
+	 * @return <code>true</code> si la classe est une entité du metamodel
+	 */
+	private boolean isEntity(final Class<?> clazz) {
+		try {
+			this.getReadEntityManager().getMetamodel().entity(clazz);
+			return true;
+		} catch (final IllegalArgumentException ex) {
+			return false;
+		}
+	}
+
 	/**
 	 * retourne la liste des entites en fonction de la criteriaQuery.
 	 *
@@ -211,6 +900,83 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 		return query.getResultList();
 	}
 
+	/**
+	 * retourne une page de la criteriaQuery par pagination par clé : la
+	 * restriction existante est complétée par <code>sortKey &gt; lastSeen</code>
+	 * et le tri est remplacé par <code>sortKey asc</code>. Une ligne de plus
+	 * que la page est lue pour savoir s'il existe une page suivante.
+	 *
+	 * @param <K>
+	 *            : le type de la clé de tri
+	 * @param cq
+	 *            : la criteriaQuery
+	 * @param root
+	 *            : le root de la criteriaQuery
+	 * @param sortKey
+	 *            : attribut unique servant de clé de tri
+	 * @param lastSeen
+	 *            : la clé de continuation, null pour la première page
+	 * @param pageSize
+	 *            : le nombre d'éléments par page
+	 * @return <code>KeysetPage</code>
+	 */
+	protected final <K extends Comparable<? super K>> KeysetPage<ENTITY, K> findPageByCriteriaQuery(
+					final CriteriaQuery<ENTITY> cq, final Root<ENTITY> root,
+					final SingularAttribute<? super ENTITY, K> sortKey, final K lastSeen, final int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSize doit être strictement positif : " + pageSize);
+		}
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
+		final Path<K> key = root.get(sortKey);
+		if (lastSeen != null) {
+			final Predicate after = cb.greaterThan(key, lastSeen);
+			cq.where(cq.getRestriction() == null ? after : cb.and(cq.getRestriction(), after));
+		}
+		cq.orderBy(cb.asc(key));
+
+		final List<ENTITY> rows = this.findAllByCriteriaQuery(cq, null, pageSize + 1);
+		if (rows.size() <= pageSize) {
+			return new KeysetPage<>(rows, null);
+		}
+		final List<ENTITY> content = new ArrayList<>(rows.subList(0, pageSize));
+		return new KeysetPage<>(content, readAttribute(content.get(pageSize - 1), sortKey));
+	}
+
+	/**
+	 * lit la valeur d'un attribut du metamodel sur une entité.
+	 *
+	 * @param <K>
+	 *            : le type de l'attribut
+	 * @param entity
+	 *            : l'entité
+	 * @param attribute
+	 *            : l'attribut
+	 * @return la valeur
+	 * @throws BeanTechnicalException
+	 *             exception
+	 */
+	@SuppressWarnings("unchecked")
+	static <K> K readAttribute(final Object entity, final SingularAttribute<?, K> attribute)
+					throws BeanTechnicalException {
+		final Member member = attribute.getJavaMember();
+		try {
+			final Object value;
+			if (member instanceof Field) {
+				final Field field = (Field) member;
+				field.setAccessible(true);
+				value = field.get(entity);
+			} else {
+				final Method getter = (Method) member;
+				getter.setAccessible(true);
+				value = getter.invoke(entity);
+			}
+			// pas de Class.cast : getJavaType() est primitif pour un attribut int
+			return (K) value;
+		} catch (final IllegalAccessException | InvocationTargetException e) {
+			throw new BeanTechnicalException(e);
+		}
+	}
+
 	/**
 	 * @param <C>
 	 *            : class
@@ -220,21 +986,77 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 *
 	 */
 	private <C> TypedQuery<C> createQuery(final CriteriaQuery<C> cq) {
-		final TypedQuery<C> query = this.em.createQuery(cq);
+		final TypedQuery<C> query = this.getReadEntityManager().createQuery(cq);
+		this.addQueryCacheHints(query);
 		return query;
 	}
 
 	/**
+	 * met la query en cache dans la région de requêtes de l'entité si le DAO
+	 * est cacheable.
+	 *
 	 * @param <C>
 	 *            : la classe
 	 * @param query
 	 *            : la query
 	 */
-	/*
-	 * private <C> void addQueryCacheHints(final TypedQuery<C> query) {
-	 * query.setHint(QueryHints.CACHEABLE, true);
-	 * query.setHint(QueryHints.CACHE_REGION, this.entityClass.getName()); }
+	protected final <C> void addQueryCacheHints(final TypedQuery<C> query) {
+		if (this.cacheable) {
+			query.setHint(QueryHints.HINT_CACHEABLE, true);
+			query.setHint(QueryHints.HINT_CACHE_REGION, this.getQueryCacheRegion());
+		}
+		if (this.readOnly) {
+			query.setHint(QueryHints.HINT_READONLY, true);
+			query.setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+		}
+	}
+
+	/**
+	 * exécute le travail avec une session en lecture seule : les entités
+	 * chargées ne gardent pas de copie de leur état pour le dirty-checking et
+	 * ne sont jamais mises à jour au flush, et les requêtes ne déclenchent pas
+	 * de flush automatique (les modifications en attente ne sont donc pas
+	 * visibles). Le mode de la session est restauré à la fin.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param work
+	 *            : le travail, par exemple des appels au DAO
+	 * @return le résultat du travail
 	 */
+	public final <R> R executeReadOnly(final Supplier<R> work) {
+		final Session session = this.getReadEntityManager().unwrap(Session.class);
+		final boolean previousReadOnly = session.isDefaultReadOnly();
+		final FlushMode previousFlushMode = session.getHibernateFlushMode();
+		session.setDefaultReadOnly(true);
+		session.setHibernateFlushMode(FlushMode.MANUAL);
+		try {
+			return work.get();
+		} finally {
+			session.setHibernateFlushMode(previousFlushMode);
+			session.setDefaultReadOnly(previousReadOnly);
+		}
+	}
+
+	/**
+	 * @return la région du cache de requêtes de l'entité
+	 */
+	protected final String getQueryCacheRegion() {
+		return this.entityClass.getName() + ".query";
+	}
+
+	/**
+	 * @return les propriétés de cache du find : le cache de second niveau est
+	 *         ignoré (sauf invalidation) si le DAO n'est pas cacheable
+	 */
+	private Map<String, Object> getCacheProperties() {
+		final Map<String, Object> properties = new HashMap<>();
+		properties.put("javax.persistence.cache.retrieveMode",
+						this.cacheable ? CacheRetrieveMode.USE : CacheRetrieveMode.BYPASS);
+		properties.put("javax.persistence.cache.storeMode",
+						this.cacheable ? CacheStoreMode.USE : CacheStoreMode.BYPASS);
+		return properties;
+	}
 
 	/**
 	 * retourne la liste des entites en fonction de la criteriaQuery.
@@ -277,7 +1099,7 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 */
 	protected final <C> C findUniqueGenericTypeByCriteriaQuery(final CriteriaQuery<C> cq) {
 		try {
-			return this.em.createQuery(cq).getSingleResult();
+			return this.createQuery(cq).getSingleResult();
 		} catch (final NoResultException e) {
 			LOGGER.debug("Pas d'entité trouvé. Retourne NULL");
 			return null;
@@ -285,12 +1107,24 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	}
 
 	/**
-	 * retourne le criteria builder.
+	 * retourne le criteria builder des écritures (criteria update et delete).
 	 *
 	 * @return <code>criteriaBuilder</code>
 	 */
 	protected final CriteriaBuilder getCriteriaBuilder() {
-		return this.em.getCriteriaBuilder();
+		return this.getEntityManager().getCriteriaBuilder();
+	}
+
+	/**
+	 * retourne le criteria builder des lectures, celui de l'entity manager
+	 * qui exécutera la requête : construire une lecture avec
+	 * {@link #getCriteriaBuilder()} ouvrirait un entity manager primaire pour
+	 * une requête exécutée sur le réplica.
+	 *
+	 * @return <code>criteriaBuilder</code>
+	 */
+	protected final CriteriaBuilder getReadCriteriaBuilder() {
+		return this.getReadEntityManager().getCriteriaBuilder();
 	}
 
 
@@ -303,8 +1137,8 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 * @return <code>Query</code>
 	 */
 	protected final TypedQuery<ENTITY> getNamedQuery(final String name) {
-		final TypedQuery<ENTITY> query = this.em.createNamedQuery(name, this.entityClass);
-		// this.addQueryCacheHints(query);
+		final TypedQuery<ENTITY> query = this.getReadEntityManager().createNamedQuery(name, this.entityClass);
+		this.addQueryCacheHints(query);
 		return query;
 	}
 
@@ -316,7 +1150,7 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 * @return <code>Query</code>
 	 */
 	protected final Query getNamedUntypedQuery(final String name) {
-		return this.em.createNamedQuery(name);
+		return this.getEntityManager().createNamedQuery(name);
 	}
 
 	/**
@@ -332,7 +1166,9 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 * @return <code>Query</code>
 	 */
 	protected final <C> TypedQuery<C> getNamedQuery(final String name, final Class<C> returnClazz) {
-		return this.em.createNamedQuery(name, returnClazz);
+		final TypedQuery<C> query = this.getReadEntityManager().createNamedQuery(name, returnClazz);
+		this.addQueryCacheHints(query);
+		return query;
 	}
 
 	/**
@@ -348,12 +1184,14 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 * @return <code>Query</code>
 	 */
 	protected final <C> TypedQuery<C> getTypedQuery(final String name, final Class<C> returnClazz) {
-		return this.em.createQuery(name, returnClazz);
+		final TypedQuery<C> query = this.getReadEntityManager().createQuery(name, returnClazz);
+		this.addQueryCacheHints(query);
+		return query;
 	}
 
 	@Override
 	public List<ENTITY> readAll(final Order... orders) {
-		final CriteriaBuilder cb = this.em.getCriteriaBuilder();
+		final CriteriaBuilder cb = this.getReadCriteriaBuilder();
 		final CriteriaQuery<ENTITY> cq = cb.createQuery(this.entityClass);
 		final Root<ENTITY> c = cq.from(this.entityClass);
 		cq.select(c);
@@ -376,8 +1214,8 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 */
 	protected final <C> TypedQuery<C> getTypedQueryWithParams(final String queryAsString,
 					final Map<String, Object> params, final Class<C> returnClazz) {
-		final TypedQuery<C> query = this.em.createQuery(queryAsString, returnClazz);
-		// this.addQueryCacheHints(query);
+		final TypedQuery<C> query = this.getReadEntityManager().createQuery(queryAsString, returnClazz);
+		this.addQueryCacheHints(query);
 		for (final Map.Entry<String, Object> param : params.entrySet()) {
 			query.setParameter(param.getKey(), param.getValue());
 		}
@@ -392,7 +1230,7 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 * @return <code>int</code>
 	 */
 	protected final int deleteByCriteria(final CriteriaDelete<ENTITY> cd) {
-		final Query q = this.em.createQuery(cd);
+		final Query q = this.getEntityManager().createQuery(cd);
 		return q.executeUpdate();
 	}
 
@@ -404,7 +1242,24 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 * @return <code>int</code>
 	 */
 	protected final int updateByCriteria(final CriteriaUpdate<ENTITY> cd) {
-		final Query q = this.em.createQuery(cd);
+		final Query q = this.getEntityManager().createQuery(cd);
+		return q.executeUpdate();
+	}
+
+	/**
+	 * execute la criteria update avec ses paramètres nommés.
+	 *
+	 * @param cd
+	 *            : criteria update
+	 * @param params
+	 *            : les paramètres, par nom
+	 * @return <code>int</code>
+	 */
+	protected final int updateByCriteria(final CriteriaUpdate<ENTITY> cd, final Map<String, Object> params) {
+		final Query q = this.getEntityManager().createQuery(cd);
+		for (final Map.Entry<String, Object> param : params.entrySet()) {
+			q.setParameter(param.getKey(), param.getValue());
+		}
 		return q.executeUpdate();
 	}
 
@@ -414,15 +1269,159 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 	 * @return <code>EntityManger</code>
 	 */
 	protected final EntityManager getEntityManager() {
-		return this.em;
+		return this.applyCacheMode(this.entityManagerProvider.getEntityManager());
+	}
+
+	/**
+	 * retourne l'entity manager des lectures (read, readAll, count,
+	 * findAllBy*, named et typed queries) : celui d'un réplica en lecture
+	 * seule si le provider en route un, sinon {@link #getEntityManager()}.
+	 *
+	 * @return <code>EntityManager</code>
+	 */
+	protected final EntityManager getReadEntityManager() {
+		return this.applyCacheMode(this.entityManagerProvider.getReadEntityManager());
+	}
+
+	/**
+	 * aligne le mode de cache de la session sur ce DAO : un DAO non cacheable
+	 * ne lit ni n'écrit le cache de second niveau, y compris pour les
+	 * persist/merge et les entités chargées par la session. Le mode reste
+	 * celui du dernier DAO utilisé sur l'entity manager, flush compris.
+	 *
+	 * @param entityManager
+	 *            l'entity manager du thread
+	 * @return l'entity manager
+	 */
+	private EntityManager applyCacheMode(final EntityManager entityManager) {
+		final Session session = entityManager.unwrap(Session.class);
+		final CacheMode cacheMode = this.cacheable ? CacheMode.NORMAL : CacheMode.IGNORE;
+		if (session.getCacheMode() != cacheMode) {
+			session.setCacheMode(cacheMode);
+		}
+		return entityManager;
 	}
 
 	/**
+	 * utilise toujours le même entity manager : le DAO ne doit alors être
+	 * utilisé que par un thread à la fois.
+	 *
 	 * @param entityManager
 	 *            the entityManager to set
 	 */
 	public final void setEntityManager(final EntityManager entityManager) {
-		this.em = entityManager;
+		this.entityManagerProvider = () -> entityManager;
+	}
+
+	/**
+	 * utilise l'entity manager fourni par le provider à chaque appel : avec un
+	 * {@link com.demo.conf.ThreadLocalEntityManagerProvider}, une même
+	 * instance du DAO sert plusieurs threads en parallèle. La configuration du
+	 * DAO (batchSize, fetchSize, ...) doit être faite avant de le partager.
+	 *
+	 * @param entityManagerProvider
+	 *            le provider d'entity manager
+	 */
+	public final void setEntityManagerProvider(final IEntityManagerProvider entityManagerProvider) {
+		this.entityManagerProvider = entityManagerProvider;
+	}
+
+	/**
+	 * @return le provider d'entity manager
+	 */
+	protected final IEntityManagerProvider getEntityManagerProvider() {
+		return this.entityManagerProvider;
+	}
+
+	/**
+	 * active le cache pour ce DAO : read() passe par le cache de second
+	 * niveau (entités <code>@Cacheable</code>) et les requêtes par la région
+	 * {@link #getQueryCacheRegion()}. Sinon toutes ses opérations se font en
+	 * {@link CacheMode#IGNORE} : ni lecture ni alimentation du cache, les
+	 * mises à jour et suppressions invalident seulement les entrées.
+	 *
+	 * @param cacheable
+	 *            true pour activer le cache
+	 */
+	public final void setCacheable(final boolean cacheable) {
+		this.cacheable = cacheable;
+	}
+
+	/**
+	 * charge les entités lues par ce DAO en lecture seule (read, readAllById,
+	 * readAll, findAllBy* et named queries) : pas de copie de l'état chargé ni
+	 * de dirty-checking au flush, et pas de flush automatique avant les
+	 * requêtes. Les modifications faites sur ces entités sont ignorées.
+	 * <p>
+	 * Pour un seul appel, voir {@link #executeReadOnly(Supplier)}.
+	 *
+	 * @param readOnly
+	 *            true pour activer la lecture seule
+	 */
+	public final void setReadOnly(final boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * garde la taille du contexte de persistance après chaque create et
+	 * update : au-delà du seuil du garde, sa politique est appliquée (par
+	 * défaut flush puis clear).
+	 *
+	 * @param persistenceContextGuard
+	 *            le garde, null pour le désactiver
+	 */
+	public final void setPersistenceContextGuard(final PersistenceContextGuard persistenceContextGuard) {
+		this.persistenceContextGuard = persistenceContextGuard;
+	}
+
+	/**
+	 * @return le garde sur la taille du contexte de persistance, null si
+	 *         désactivé
+	 */
+	public final PersistenceContextGuard getPersistenceContextGuard() {
+		return this.persistenceContextGuard;
+	}
+
+	/**
+	 * @return le cache des requêtes de findAllByAttributes, pour suivre les
+	 *         hits / misses
+	 */
+	public static QueryTemplateCache getQueryTemplateCache() {
+		return QUERY_TEMPLATE_CACHE;
+	}
+
+	/**
+	 * @param batchSize
+	 *            nombre d'entités par batch JDBC pour createAll / updateAll
+	 */
+	public final void setBatchSize(final int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize doit être strictement positif : " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param fetchSize
+	 *            fetch size JDBC des curseurs ouverts par les streams
+	 */
+	public final void setFetchSize(final int fetchSize) {
+		if (fetchSize <= 0) {
+			throw new IllegalArgumentException("fetchSize doit être strictement positif : " + fetchSize);
+		}
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * @param idBatchSize
+	 *            nombre d'identifiants par clause IN (deleteAllById,
+	 *            readAllById)
+	 */
+	public final void setIdBatchSize(final int idBatchSize) {
+		if (idBatchSize <= 0) {
+			throw new IllegalArgumentException("idBatchSize doit être strictement positif : " + idBatchSize);
+		}
+		this.idBatchSize = idBatchSize;
 	}
 
 	/**
@@ -435,7 +1434,11 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 
 	@Override
 	public final void detachEntity(final ENTITY entity) {
-		this.em.detach(entity);
+		this.getEntityManager().detach(entity);
+		final EntityManager readEntityManager = this.getReadEntityManager();
+		if (readEntityManager != this.getEntityManager()) {
+			readEntityManager.detach(entity);
+		}
 	}
 
 	/**
@@ -447,29 +1450,16 @@ public abstract class AbstractGenericDaoImpl<ENTITY, PK extends Serializable> im
 
 	}
 
-    /**
-     * nullifies the empty strings of the object.
-     *
-     * @param o
-     *            : the object
-     * @throws BeanTechnicalException
-     *             exception
-     */
-    private static void nullifyEmptyStrings(final Object o) throws BeanTechnicalException {
-        for (final Field f : o.getClass().getDeclaredFields()) {
-            f.setAccessible(true);
-            try {
-                if (f.getType().equals(String.class) && !Modifier.isStatic(f.getModifiers())
-                        && !Modifier.isFinal(f.getModifiers())) {
-                    final String value = (String) f.get(o);
-                    if (value != null && value.trim().isEmpty()) {
-                        f.set(o, null);
-                    }
-                }
-            } catch (final IllegalArgumentException | IllegalAccessException e) {
-                throw new BeanTechnicalException(e);
-            }
-        }
-    }
+	/**
+	 * nullifies the empty strings of the object.
+	 *
+	 * @param o
+	 *            : the object
+	 * @throws BeanTechnicalException
+	 *             exception
+	 */
+	private static void nullifyEmptyStrings(final Object o) throws BeanTechnicalException {
+		StringFieldNormalizer.of(o.getClass()).nullifyEmptyStrings(o);
+	}
 
 }
@@ -0,0 +1,389 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.IBeanAsSearchCriteres;
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.conf.metrics.LatencyHistogram;
+import com.demo.dao.IAsyncGenericDao;
+import com.demo.dao.IGenericDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.criteria.Order;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Exécute les appels d'un {@link IGenericDao} sur un pool de threads borné.
+ * Le DAO doit obtenir son entity manager du
+ * {@link ThreadLocalEntityManagerProvider} passé au constructeur : chaque
+ * appel s'exécute dans une transaction de l'entity manager de son thread,
+ * fermé à la fin de l'appel.
+ * <p>
+ * Quand tous les threads sont occupés, les appels attendent dans une file
+ * bornée ; quand la file est pleine, l'appelant est bloqué jusqu'à ce qu'une
+ * place se libère (backpressure).
+ *
+ * <pre>
+ * ThreadLocalEntityManagerProvider provider = new ThreadLocalEntityManagerProvider(emf);
+ * PersonDaoImpl personDao = new PersonDaoImpl();
+ * personDao.setEntityManagerProvider(provider);
+ * IAsyncGenericDao&lt;Person, Integer&gt; asyncDao = new AsyncGenericDaoImpl&lt;&gt;(personDao, provider, 8, 256);
+ * </pre>
+ *
+ * @param <PK>
+ *            : la clé primaire
+ * @param <ENTITY>
+ *            : l'entité
+ */
+public class AsyncGenericDaoImpl<ENTITY, PK extends Serializable> implements IAsyncGenericDao<ENTITY, PK> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncGenericDaoImpl.class.getName());
+
+	/**
+	 * numéro des pools, pour nommer les threads.
+	 */
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+	/**
+	 * le DAO synchrone.
+	 */
+	private final IGenericDao<ENTITY, PK> dao;
+
+	/**
+	 * le provider d'entity manager du DAO.
+	 */
+	private final ThreadLocalEntityManagerProvider entityManagerProvider;
+
+	/**
+	 * la file des appels en attente.
+	 */
+	private final BlockingQueue<Runnable> queue;
+
+	/**
+	 * le pool.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * temps passé dans la file.
+	 */
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+
+	/**
+	 * temps d'exécution des appels.
+	 */
+	private final LatencyHistogram execution = new LatencyHistogram();
+
+	/**
+	 * profondeur maximale observée de la file.
+	 */
+	private final LongAccumulator maxQueueDepth = new LongAccumulator(Long::max, 0);
+
+	/**
+	 * nombre de soumissions bloquées faute de place dans la file.
+	 */
+	private final LongAdder blockedSubmissions = new LongAdder();
+
+	/**
+	 * nombre d'appels en échec.
+	 */
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param dao
+	 *            : le DAO, qui doit utiliser <code>entityManagerProvider</code>
+	 * @param entityManagerProvider
+	 *            : le provider d'entity manager du DAO
+	 * @param threads
+	 *            : nombre de threads du pool (au plus la taille du pool de
+	 *            connexions)
+	 * @param queueCapacity
+	 *            : nombre d'appels en attente au-delà duquel l'appelant est
+	 *            bloqué
+	 */
+	public AsyncGenericDaoImpl(final IGenericDao<ENTITY, PK> dao,
+					final ThreadLocalEntityManagerProvider entityManagerProvider, final int threads,
+					final int queueCapacity) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("threads doit être strictement positif : " + threads);
+		}
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity doit être strictement positif : " + queueCapacity);
+		}
+		this.dao = dao;
+		this.entityManagerProvider = entityManagerProvider;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, this.queue,
+						newThreadFactory(), this::blockUntilQueued);
+	}
+
+	/**
+	 * @return une fabrique de threads démons nommés async-dao-&lt;pool&gt;-&lt;n&gt;
+	 */
+	private static ThreadFactory newThreadFactory() {
+		final int pool = POOL_NUMBER.incrementAndGet();
+		final AtomicInteger number = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = new Thread(runnable, "async-dao-" + pool + "-" + number.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * file pleine : bloque l'appelant jusqu'à ce qu'une place se libère.
+	 *
+	 * @param task
+	 *            : l'appel refusé
+	 * @param executor
+	 *            : le pool
+	 */
+	private void blockUntilQueued(final Runnable task, final ThreadPoolExecutor executor) {
+		if (executor.isShutdown()) {
+			throw new RejectedExecutionException("le DAO asynchrone est fermé");
+		}
+		this.blockedSubmissions.increment();
+		try {
+			this.queue.put(task);
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("interrompu en attente d'une place dans la file", ex);
+		}
+		// fermé pendant l'attente : les threads ont pu s'arrêter sans voir l'appel
+		if (executor.isShutdown() && this.queue.remove(task)) {
+			throw new RejectedExecutionException("le DAO asynchrone est fermé");
+		}
+	}
+
+	/**
+	 * soumet un appel au pool.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param call
+	 *            : l'appel au DAO
+	 * @return le résultat à venir, en échec avec une
+	 *         {@link RejectedExecutionException} si le DAO est fermé ou
+	 *         l'appelant interrompu en attente d'une place
+	 */
+	protected final <R> CompletableFuture<R> submit(final Function<IGenericDao<ENTITY, PK>, R> call) {
+		final CompletableFuture<R> future = new CompletableFuture<>();
+		final long submitted = System.nanoTime();
+		try {
+			this.executor.execute(() -> this.run(call, future, submitted));
+		} catch (final RejectedExecutionException ex) {
+			future.completeExceptionally(ex);
+			return future;
+		}
+		this.maxQueueDepth.accumulate(this.queue.size());
+		return future;
+	}
+
+	private <R> void run(final Function<IGenericDao<ENTITY, PK>, R> call, final CompletableFuture<R> future,
+					final long submitted) {
+		final long started = System.nanoTime();
+		this.queueWait.record(started - submitted);
+		try {
+			future.complete(this.entityManagerProvider.inTransaction(entityManager -> call.apply(this.dao)));
+		} catch (final Throwable ex) {
+			// Error ou exception checked levée sans être déclarée : le future
+			// doit se terminer quoi qu'il arrive, sinon l'appelant attend
+			// indéfiniment
+			this.failures.increment();
+			LOGGER.error(ex.getMessage(), ex);
+			future.completeExceptionally(ex);
+			if (ex instanceof Error) {
+				throw (Error) ex;
+			}
+		} finally {
+			this.entityManagerProvider.release();
+			this.execution.record(System.nanoTime() - started);
+		}
+	}
+
+	@Override
+	public CompletableFuture<ENTITY> create(final ENTITY newInstance) {
+		return this.submit(dao -> {
+			dao.create(newInstance);
+			return newInstance;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Collection<ENTITY>> createAll(final Collection<ENTITY> newInstances) {
+		return this.submit(dao -> {
+			dao.createAll(newInstances);
+			return newInstances;
+		});
+	}
+
+	@Override
+	public CompletableFuture<ENTITY> update(final ENTITY transientObject) {
+		return this.submit(dao -> dao.update(transientObject));
+	}
+
+	@Override
+	public CompletableFuture<List<ENTITY>> updateAll(final Collection<ENTITY> transientObjects) {
+		return this.submit(dao -> dao.updateAll(transientObjects));
+	}
+
+	@Override
+	public CompletableFuture<Void> delete(final ENTITY persistentObject) {
+		return this.submit(dao -> {
+			dao.delete(persistentObject);
+			return null;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Void> deleteById(final PK identifiant) {
+		return this.submit(dao -> {
+			dao.deleteById(identifiant);
+			return null;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Integer> deleteAllById(final Collection<PK> identifiants) {
+		return this.submit(dao -> dao.deleteAllById(identifiants));
+	}
+
+	@Override
+	public CompletableFuture<ENTITY> read(final PK id) {
+		return this.submit(dao -> dao.read(id));
+	}
+
+	@Override
+	public CompletableFuture<List<ENTITY>> readAllById(final Collection<PK> ids) {
+		return this.submit(dao -> dao.readAllById(ids));
+	}
+
+	@Override
+	public CompletableFuture<Long> count() {
+		return this.submit(IGenericDao::count);
+	}
+
+	@Override
+	public CompletableFuture<List<ENTITY>> readAll() {
+		return this.submit(IGenericDao::readAll);
+	}
+
+	@Override
+	public CompletableFuture<List<ENTITY>> readAll(final Order... orders) {
+		return this.submit(dao -> dao.readAll(orders));
+	}
+
+	@Override
+	public CompletableFuture<List<ENTITY>> findAllByAttributes(final Map<String, Object> attributes) {
+		return this.submit(dao -> dao.findAllByAttributes(attributes));
+	}
+
+	@Override
+	public CompletableFuture<List<ENTITY>> findAllByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example) {
+		return this.submit(dao -> dao.findAllByBeanCritere(example));
+	}
+
+	@Override
+	public CompletableFuture<Integer> deleteAll() {
+		return this.submit(IGenericDao::deleteAll);
+	}
+
+	@Override
+	public void close() {
+		this.executor.shutdown();
+		try {
+			if (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				LOGGER.warn("{} appels DAO encore en cours à la fermeture", this.executor.getActiveCount());
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return le nombre d'appels en attente dans la file
+	 */
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return la profondeur maximale observée de la file
+	 */
+	public long getMaxQueueDepth() {
+		return this.maxQueueDepth.get();
+	}
+
+	/**
+	 * @return la capacité de la file
+	 */
+	public int getQueueCapacity() {
+		return this.queue.size() + this.queue.remainingCapacity();
+	}
+
+	/**
+	 * @return le nombre de threads occupés
+	 */
+	public int getActiveCount() {
+		return this.executor.getActiveCount();
+	}
+
+	/**
+	 * @return le nombre de threads du pool
+	 */
+	public int getPoolSize() {
+		return this.executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * @return le nombre d'appels terminés
+	 */
+	public long getCompletedCount() {
+		return this.executor.getCompletedTaskCount();
+	}
+
+	/**
+	 * @return le nombre d'appels en échec
+	 */
+	public long getFailureCount() {
+		return this.failures.sum();
+	}
+
+	/**
+	 * @return le nombre de soumissions bloquées faute de place dans la file
+	 */
+	public long getBlockedSubmissions() {
+		return this.blockedSubmissions.sum();
+	}
+
+	/**
+	 * @return le temps passé dans la file, de la soumission au début de
+	 *         l'exécution
+	 */
+	public LatencyHistogram.Snapshot getQueueWait() {
+		return this.queueWait.snapshot();
+	}
+
+	/**
+	 * @return le temps d'exécution des appels, transaction comprise
+	 */
+	public LatencyHistogram.Snapshot getExecution() {
+		return this.execution.snapshot();
+	}
+
+}
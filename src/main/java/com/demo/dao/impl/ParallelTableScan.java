@@ -0,0 +1,250 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.conf.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Parcours parallèle de toute une table : l'intervalle [min, max] de la clé
+ * numérique est découpé en partitions de même largeur, et chaque partition
+ * est lue en streaming ({@link AbstractGenericDaoImpl#streamByCriteriaQuery})
+ * par un thread avec son propre entity manager, fermé à la fin de la
+ * partition. Les bornes sont lues elles aussi sur un thread du pool :
+ * l'entity manager de l'appelant, et sa transaction éventuelle, ne sont pas
+ * touchés. Le DAO doit obtenir son entity manager du
+ * {@link ThreadLocalEntityManagerProvider} passé au constructeur.
+ * <p>
+ * Les entités sont en lecture seule et détachées au fur et à mesure. Des
+ * clés très inégalement réparties donnent des partitions déséquilibrées :
+ * prévoir alors plus de partitions que de threads.
+ *
+ * <pre>
+ * ParallelTableScan&lt;Person, Integer&gt; scan = new ParallelTableScan&lt;&gt;(personDao, provider, Person_.id, 4);
+ * long names = scan.scan(persons -&gt; persons.filter(p -&gt; p.getName() != null).count(), Long::sum);
+ * </pre>
+ *
+ * @param <ENTITY>
+ *            : l'entité
+ * @param <K>
+ *            : le type de la clé de partitionnement
+ */
+public class ParallelTableScan<ENTITY, K extends Number> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParallelTableScan.class.getName());
+
+	/**
+	 * numéro des parcours, pour nommer les threads.
+	 */
+	private static final AtomicInteger SCAN_NUMBER = new AtomicInteger();
+
+	private final AbstractGenericDaoImpl<ENTITY, ?> dao;
+
+	private final ThreadLocalEntityManagerProvider entityManagerProvider;
+
+	private final SingularAttribute<? super ENTITY, K> key;
+
+	private final int workers;
+
+	private final int partitions;
+
+	/**
+	 * Constructeur avec une partition par thread.
+	 *
+	 * @param dao
+	 *            : le DAO, qui doit utiliser <code>entityManagerProvider</code>
+	 * @param entityManagerProvider
+	 *            : le provider d'entity manager du DAO
+	 * @param key
+	 *            : la clé numérique de partitionnement, indexée (ex :
+	 *            <code>Person_.id</code>)
+	 * @param workers
+	 *            : le nombre de threads
+	 */
+	public ParallelTableScan(final AbstractGenericDaoImpl<ENTITY, ?> dao,
+					final ThreadLocalEntityManagerProvider entityManagerProvider,
+					final SingularAttribute<? super ENTITY, K> key, final int workers) {
+		this(dao, entityManagerProvider, key, workers, workers);
+	}
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param dao
+	 *            : le DAO, qui doit utiliser <code>entityManagerProvider</code>
+	 * @param entityManagerProvider
+	 *            : le provider d'entity manager du DAO
+	 * @param key
+	 *            : la clé numérique de partitionnement, indexée
+	 * @param workers
+	 *            : le nombre de threads
+	 * @param partitions
+	 *            : le nombre de partitions, au moins <code>workers</code>
+	 */
+	public ParallelTableScan(final AbstractGenericDaoImpl<ENTITY, ?> dao,
+					final ThreadLocalEntityManagerProvider entityManagerProvider,
+					final SingularAttribute<? super ENTITY, K> key, final int workers, final int partitions) {
+		if (workers <= 0) {
+			throw new IllegalArgumentException("workers doit être strictement positif : " + workers);
+		}
+		if (partitions < workers) {
+			throw new IllegalArgumentException("partitions doit être au moins égal à workers : " + partitions);
+		}
+		this.dao = dao;
+		this.entityManagerProvider = entityManagerProvider;
+		this.key = key;
+		this.workers = workers;
+		this.partitions = partitions;
+	}
+
+	/**
+	 * applique l'action à toutes les entités de la table. L'action est
+	 * appelée depuis plusieurs threads en même temps.
+	 *
+	 * @param action
+	 *            : l'action, thread-safe
+	 * @return le nombre d'entités parcourues
+	 */
+	public long forEach(final Consumer<? super ENTITY> action) {
+		// pas de peek().count() : count() peut se passer d'évaluer le pipeline
+		return this.scan(entities -> entities.mapToLong(entity -> {
+			action.accept(entity);
+			return 1L;
+		}).sum(), Long::sum);
+	}
+
+	/**
+	 * calcule un résultat par partition puis les fusionne.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param perPartition
+	 *            : le calcul d'une partition à partir de ses entités
+	 * @param merge
+	 *            : la fusion de deux résultats
+	 * @return le résultat fusionné, le calcul d'un stream vide si la table
+	 *         est vide
+	 */
+	public <R> R scan(final Function<Stream<ENTITY>, R> perPartition, final BinaryOperator<R> merge) {
+		final int scan = SCAN_NUMBER.incrementAndGet();
+		final AtomicInteger threadNumber = new AtomicInteger();
+		// les threads ne sont créés qu'à la soumission des tâches
+		final ExecutorService executor = Executors.newFixedThreadPool(this.workers, runnable -> {
+			final Thread thread = new Thread(runnable, "table-scan-" + scan + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			// hors du thread appelant, dont l'entity manager ne doit pas être fermé
+			final List<long[]> ranges = executor.submit(this::split).get();
+			if (ranges.isEmpty()) {
+				return perPartition.apply(Stream.empty());
+			}
+			final List<Future<R>> results = new ArrayList<>(ranges.size());
+			for (int i = 0; i < ranges.size(); i++) {
+				final long[] range = ranges.get(i);
+				final boolean last = i == ranges.size() - 1;
+				results.add(executor.submit(() -> this.scanPartition(range[0], range[1], last, perPartition)));
+			}
+			R merged = null;
+			for (final Future<R> result : results) {
+				final R partial = result.get();
+				merged = merged == null ? partial : merge.apply(merged, partial);
+			}
+			return merged;
+		} catch (final ExecutionException ex) {
+			LOGGER.error(ex.getCause().getMessage(), ex.getCause());
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new DataAccessException(ex.getCause());
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessException(ex);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * découpe [min, max] de la clé en partitions de même largeur. Exécuté sur
+	 * un thread du pool, dont l'entity manager est fermé à la fin.
+	 *
+	 * @return les bornes [début inclus, fin exclue] des partitions, vide si la
+	 *         table est vide
+	 */
+	private List<long[]> split() {
+		final CriteriaBuilder cb = this.dao.getReadCriteriaBuilder();
+		final CriteriaQuery<Object[]> cq = cb.createQuery(Object[].class);
+		final Root<ENTITY> root = cq.from(this.dao.getEntityClass());
+		final Path<K> path = root.get(this.key);
+		cq.multiselect(cb.min(path), cb.max(path));
+		final Object[] bounds;
+		try {
+			bounds = this.dao.findUniqueGenericTypeByCriteriaQuery(cq);
+		} finally {
+			this.entityManagerProvider.release();
+		}
+		final List<long[]> ranges = new ArrayList<>(this.partitions);
+		if (bounds[0] == null) {
+			return ranges;
+		}
+		final long min = ((Number) bounds[0]).longValue();
+		final long max = ((Number) bounds[1]).longValue();
+		final long width = Math.max(1, (max - min) / this.partitions + 1);
+		for (long from = min; from <= max && from >= min; from += width) {
+			ranges.add(new long[] {from, from + width });
+		}
+		return ranges;
+	}
+
+	/**
+	 * parcourt une partition avec l'entity manager du thread courant.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param from
+	 *            : début inclus
+	 * @param to
+	 *            : fin exclue, ignorée pour la dernière partition
+	 * @param last
+	 *            : true pour la dernière partition
+	 * @param perPartition
+	 *            : le calcul de la partition
+	 * @return le résultat de la partition
+	 */
+	private <R> R scanPartition(final long from, final long to, final boolean last,
+					final Function<Stream<ENTITY>, R> perPartition) {
+		try {
+			final CriteriaBuilder cb = this.dao.getReadCriteriaBuilder();
+			final CriteriaQuery<ENTITY> cq = cb.createQuery(this.dao.getEntityClass());
+			final Root<ENTITY> root = cq.from(this.dao.getEntityClass());
+			final Path<K> path = root.get(this.key);
+			cq.select(root);
+			cq.where(last ? cb.ge(path, from) : cb.and(cb.ge(path, from), cb.lt(path, to)));
+			try (Stream<ENTITY> entities = this.dao.streamByCriteriaQuery(cq)) {
+				return perPartition.apply(entities);
+			}
+		} finally {
+			this.entityManagerProvider.release();
+		}
+	}
+
+}
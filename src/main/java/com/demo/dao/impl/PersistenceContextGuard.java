@@ -0,0 +1,149 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.IPersistenceContextPolicy;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Garde sur la taille du contexte de persistance pour les longues unités de
+ * travail : après chaque create / update d'un DAO gardé, le nombre d'entités
+ * gérées est comparé au seuil et la politique est appliquée s'il est
+ * dépassé (par défaut flush puis clear). Un même garde peut être partagé par
+ * les DAO d'un même entity manager ; ses compteurs sont thread-safe.
+ * <p>
+ * createAll / updateAll bornent eux-mêmes le contexte en le vidant à chaque
+ * batch ; le garde n'est vérifié qu'une fois, à la fin, sur les entités du
+ * dernier batch incomplet.
+ * <p>
+ * Après un clear, les entités créées ou retournées par update sont
+ * détachées.
+ */
+public final class PersistenceContextGuard {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceContextGuard.class.getName());
+
+	/**
+	 * nombre d'entités gérées au-delà duquel la politique est appliquée.
+	 */
+	private final int threshold;
+
+	/**
+	 * la politique.
+	 */
+	private final IPersistenceContextPolicy policy;
+
+	/**
+	 * nombre de vérifications.
+	 */
+	private final LongAdder checks = new LongAdder();
+
+	/**
+	 * nombre de déclenchements de la politique.
+	 */
+	private final LongAdder triggers = new LongAdder();
+
+	/**
+	 * plus grand nombre d'entités gérées observé.
+	 */
+	private final LongAccumulator maxManagedEntities = new LongAccumulator(Long::max, 0);
+
+	/**
+	 * nombre d'entités gérées à la dernière vérification.
+	 */
+	private volatile int lastManagedEntities;
+
+	/**
+	 * Constructeur avec la politique
+	 * {@link IPersistenceContextPolicy#FLUSH_AND_CLEAR}.
+	 *
+	 * @param threshold
+	 *            : nombre d'entités gérées au-delà duquel on flush et clear
+	 */
+	public PersistenceContextGuard(final int threshold) {
+		this(threshold, IPersistenceContextPolicy.FLUSH_AND_CLEAR);
+	}
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param threshold
+	 *            : nombre d'entités gérées au-delà duquel la politique est
+	 *            appliquée
+	 * @param policy
+	 *            : la politique
+	 */
+	public PersistenceContextGuard(final int threshold, final IPersistenceContextPolicy policy) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("threshold doit être strictement positif : " + threshold);
+		}
+		if (policy == null) {
+			throw new IllegalArgumentException("La politique du garde est NULL");
+		}
+		this.threshold = threshold;
+		this.policy = policy;
+	}
+
+	/**
+	 * vérifie la taille du contexte de persistance et applique la politique
+	 * si le seuil est dépassé.
+	 *
+	 * @param entityManager
+	 *            : l'entity manager
+	 */
+	public void check(final EntityManager entityManager) {
+		final int managed = entityManager.unwrap(SessionImplementor.class).getPersistenceContext()
+						.getNumberOfManagedEntities();
+		this.checks.increment();
+		this.lastManagedEntities = managed;
+		this.maxManagedEntities.accumulate(managed);
+		if (managed > this.threshold) {
+			this.triggers.increment();
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("{} entités gérées, seuil de {} dépassé", managed, this.threshold);
+			}
+			this.policy.onThresholdExceeded(entityManager, managed);
+		}
+	}
+
+	/**
+	 * @return le seuil
+	 */
+	public int getThreshold() {
+		return this.threshold;
+	}
+
+	/**
+	 * @return le nombre de vérifications
+	 */
+	public long getCheckCount() {
+		return this.checks.sum();
+	}
+
+	/**
+	 * @return le nombre de déclenchements de la politique
+	 */
+	public long getTriggerCount() {
+		return this.triggers.sum();
+	}
+
+	/**
+	 * @return le plus grand nombre d'entités gérées observé
+	 */
+	public long getMaxManagedEntities() {
+		return this.maxManagedEntities.get();
+	}
+
+	/**
+	 * @return le nombre d'entités gérées à la dernière vérification (avant
+	 *         application de la politique)
+	 */
+	public int getLastManagedEntities() {
+		return this.lastManagedEntities;
+	}
+
+}
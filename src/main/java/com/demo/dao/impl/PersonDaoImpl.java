@@ -17,7 +17,7 @@ public class PersonDaoImpl extends AbstractGenericDaoImpl<Person, Integer> imple
 
     @Override
     public List<Person> findByName(String name) {
-        final CriteriaBuilder criteriaBuilder = this.getCriteriaBuilder();
+        final CriteriaBuilder criteriaBuilder = this.getReadCriteriaBuilder();
         final CriteriaQuery<Person> criteriaQuery = criteriaBuilder.createQuery(this.getEntityClass());
         final Root<Person> demoRoot = criteriaQuery.from(this.getEntityClass());
         criteriaQuery.where(criteriaBuilder.like(demoRoot.get(Person_.name), name));
@@ -0,0 +1,84 @@
+package com.demo.dao.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache des requêtes JPQL paramétrées, indexé par la forme de la requête
+ * (classe de l'entité et noms des attributs). Une même forme produit toujours
+ * la même chaîne JPQL : hibernate ne la parse et ne la planifie qu'une fois
+ * (QueryPlanCache) et seules les valeurs sont liées aux appels suivants.
+ * <p>
+ * Le nombre de formes est borné par les combinaisons d'attributs utilisées
+ * par l'application, le cache n'a donc pas d'éviction.
+ */
+public final class QueryTemplateCache {
+
+	/**
+	 * les requêtes par forme.
+	 */
+	private final ConcurrentMap<String, String> templates = new ConcurrentHashMap<>();
+
+	/**
+	 * nombre de formes trouvées dans le cache.
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * nombre de formes compilées.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * retourne la requête de la forme demandée, en la compilant au premier
+	 * appel.
+	 *
+	 * @param shape
+	 *            : la clé de la forme
+	 * @param compiler
+	 *            : construit la requête JPQL si la forme est absente
+	 * @return la requête JPQL
+	 */
+	String get(final String shape, final Supplier<String> compiler) {
+		final String template = this.templates.get(shape);
+		if (template != null) {
+			this.hits.increment();
+			return template;
+		}
+		this.misses.increment();
+		return this.templates.computeIfAbsent(shape, k -> compiler.get());
+	}
+
+	/**
+	 * @return nombre d'appels servis par une requête déjà compilée
+	 */
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * @return nombre d'appels ayant compilé une nouvelle forme
+	 */
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * @return nombre de formes en cache
+	 */
+	public int size() {
+		return this.templates.size();
+	}
+
+	/**
+	 * vide le cache et remet les compteurs à zéro.
+	 */
+	public void clear() {
+		this.templates.clear();
+		this.hits.reset();
+		this.misses.reset();
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.demo.dao.impl;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator au-dessus d'un curseur hibernate en avant seulement. Chaque
+ * entité chargée par le curseur est détachée du contexte de persistance dès
+ * que le consommateur l'a traitée, la mémoire reste donc constante quel que
+ * soit le nombre de lignes. Une entité déjà gérée avant sa lecture (le
+ * curseur rend alors l'instance du contexte) reste gérée : l'appelant ne perd
+ * pas ses modifications.
+ *
+ * @param <C>
+ *            le type des lignes
+ */
+class ScrollableResultsSpliterator<C> extends Spliterators.AbstractSpliterator<C> {
+
+	/**
+	 * le curseur.
+	 */
+	private final ScrollableResults results;
+
+	/**
+	 * l'entity manager qui a ouvert le curseur, null si les lignes ne sont pas
+	 * des entités.
+	 */
+	private final EntityManager entityManager;
+
+	/**
+	 * le contexte de persistance de l'entity manager, null si les lignes ne
+	 * sont pas des entités.
+	 */
+	private final PersistenceContext persistenceContext;
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param results
+	 *            : le curseur
+	 * @param entityManager
+	 *            : l'entity manager dont détacher les lignes, null pour ne rien
+	 *            détacher
+	 */
+	ScrollableResultsSpliterator(final ScrollableResults results, final EntityManager entityManager) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		this.results = results;
+		this.entityManager = entityManager;
+		this.persistenceContext = entityManager == null ? null
+						: entityManager.unwrap(SessionImplementor.class).getPersistenceContext();
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super C> action) {
+		final int managedBefore = this.persistenceContext == null ? 0
+						: this.persistenceContext.getNumberOfManagedEntities();
+		if (!this.results.next()) {
+			return false;
+		}
+		@SuppressWarnings("unchecked")
+		final C row = (C) this.results.get(0);
+		// une ligne déjà dans le contexte n'en ajoute pas : elle n'est pas à nous
+		final boolean loaded = this.persistenceContext != null
+						&& this.persistenceContext.getNumberOfManagedEntities() > managedBefore;
+		action.accept(row);
+		if (loaded) {
+			this.entityManager.detach(row);
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,818 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.IBeanAsSearchCriteres;
+import com.demo.conf.PersistenceRuntime;
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.conf.exception.DataAccessException;
+import com.demo.dao.ColumnarResult;
+import com.demo.dao.IGenericDao;
+import com.demo.dao.KeysetPage;
+import org.hibernate.ReplicationMode;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.Assigned;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * DAO réparti sur plusieurs bases (shards), une unité de persistance et un
+ * {@link AbstractGenericDaoImpl} par shard. Une entité vit sur le shard
+ * <code>floorMod(hash(PK), nombre de shards)</code> :
+ * <ul>
+ * <li>read, create, update, delete et les mises à jour partielles vont à un
+ * seul shard. Si le thread courant a une transaction active sur ce shard,
+ * elle est rejointe ; sinon l'opération ouvre son propre entity manager (et
+ * sa transaction pour une écriture) et le ferme à la fin : rien ne reste
+ * ouvert sur le thread et les entités retournées sont détachées ;</li>
+ * <li>readAll, count, findAllBy* et les projections interrogent tous les
+ * shards en parallèle et fusionnent les résultats ; readAll(Order...) et
+ * readPage font une fusion ordonnée des résultats déjà triés par shard.</li>
+ * </ul>
+ * Les interrogations parallèles se font sur des threads du DAO avec leurs
+ * propres entity managers : elles ne voient que les données validées, et les
+ * entités retournées sont détachées.
+ * <p>
+ * Pour un identifiant généré, la valeur est prise au générateur de l'entité
+ * sur le premier shard (qui fait ainsi autorité sur les identifiants) puis
+ * l'entité est insérée avec cet identifiant sur son shard.
+ *
+ * @param <PK>
+ *            : la clé primaire
+ * @param <ENTITY>
+ *            : l'entité
+ */
+public class ShardedGenericDao<ENTITY, PK extends Serializable> implements IGenericDao<ENTITY, PK>, AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardedGenericDao.class.getName());
+
+	/**
+	 * numéro des DAO, pour nommer les threads.
+	 */
+	private static final AtomicInteger DAO_NUMBER = new AtomicInteger();
+
+	/**
+	 * le DAO de chaque shard.
+	 */
+	private final List<AbstractGenericDaoImpl<ENTITY, PK>> shards;
+
+	/**
+	 * le provider d'entity manager de chaque shard.
+	 */
+	private final List<ThreadLocalEntityManagerProvider> providers;
+
+	/**
+	 * les threads des interrogations parallèles.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * l'accès aux identifiants, sur la factory du premier shard.
+	 */
+	private final PersistenceUnitUtil persistenceUnitUtil;
+
+	/**
+	 * le persister de l'entité sur le premier shard, pour la valeur
+	 * d'identifiant non attribuée.
+	 */
+	private final EntityPersister persister;
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param shards
+	 *            : le DAO de chaque shard, dans un ordre fixe
+	 * @param providers
+	 *            : le provider d'entity manager utilisé par chaque DAO, dans le
+	 *            même ordre
+	 */
+	public ShardedGenericDao(final List<? extends AbstractGenericDaoImpl<ENTITY, PK>> shards,
+					final List<? extends ThreadLocalEntityManagerProvider> providers) {
+		if (shards.isEmpty() || shards.size() != providers.size()) {
+			throw new IllegalArgumentException("Il faut au moins un shard et un provider par shard");
+		}
+		this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+		this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+		final EntityManagerFactory first = this.providers.get(0).getEntityManagerFactory();
+		this.persistenceUnitUtil = first.getPersistenceUnitUtil();
+		this.persister = first.unwrap(SessionFactoryImplementor.class).getMetamodel()
+						.entityPersister(this.shards.get(0).getEntityClass());
+		final int number = DAO_NUMBER.incrementAndGet();
+		final AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+			final Thread thread = new Thread(runnable, "shard-" + number + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * crée un DAO réparti sur les unités de persistance données.
+	 *
+	 * @param <ENTITY>
+	 *            : l'entité
+	 * @param <PK>
+	 *            : la clé primaire
+	 * @param daoFactory
+	 *            : crée un DAO par shard (ex : <code>PersonDaoImpl::new</code>)
+	 * @param persistenceUnits
+	 *            : les unités de persistance des shards, dans un ordre fixe
+	 * @return le DAO réparti
+	 */
+	public static <ENTITY, PK extends Serializable> ShardedGenericDao<ENTITY, PK> of(
+					final Supplier<? extends AbstractGenericDaoImpl<ENTITY, PK>> daoFactory,
+					final String... persistenceUnits) {
+		final List<AbstractGenericDaoImpl<ENTITY, PK>> shards = new ArrayList<>(persistenceUnits.length);
+		final List<ThreadLocalEntityManagerProvider> providers = new ArrayList<>(persistenceUnits.length);
+		for (final String persistenceUnit : persistenceUnits) {
+			final ThreadLocalEntityManagerProvider provider = PersistenceRuntime
+							.createEntityManagerProvider(persistenceUnit);
+			final AbstractGenericDaoImpl<ENTITY, PK> dao = daoFactory.get();
+			dao.setEntityManagerProvider(provider);
+			shards.add(dao);
+			providers.add(provider);
+		}
+		return new ShardedGenericDao<>(shards, providers);
+	}
+
+	/**
+	 * retourne le shard d'un identifiant.
+	 *
+	 * @param identifiant
+	 *            : l'identifiant
+	 * @return l'index du shard
+	 */
+	public final int shardOf(final PK identifiant) {
+		if (identifiant == null) {
+			throw new IllegalArgumentException("L'identifiant de PK est NULL pour le routage");
+		}
+		// mélange des bits : des identifiants consécutifs ou multiples du
+		// nombre de shards se répartissent quand même
+		int h = identifiant.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return Math.floorMod(h, this.shards.size());
+	}
+
+	/**
+	 * @return le nombre de shards
+	 */
+	public final int getShardCount() {
+		return this.shards.size();
+	}
+
+	/**
+	 * exécute le travail sur un shard, dans une transaction de l'entity
+	 * manager du thread courant.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param shard
+	 *            : l'index du shard
+	 * @param work
+	 *            : le travail
+	 * @return le résultat du travail
+	 */
+	private <R> R onShard(final int shard, final Function<AbstractGenericDaoImpl<ENTITY, PK>, R> work) {
+		return this.inShardTransaction(shard, entityManager -> work.apply(this.shards.get(shard)));
+	}
+
+	/**
+	 * exécute le travail dans une transaction de l'entity manager du thread
+	 * courant sur un shard, fermé à la fin si le thread n'avait pas déjà une
+	 * transaction active sur ce shard.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param shard
+	 *            : l'index du shard
+	 * @param work
+	 *            : le travail
+	 * @return le résultat du travail
+	 */
+	private <R> R inShardTransaction(final int shard, final Function<EntityManager, R> work) {
+		final ThreadLocalEntityManagerProvider provider = this.providers.get(shard);
+		final boolean owned = !inCallerTransaction(provider);
+		try {
+			return provider.inTransaction(work);
+		} finally {
+			if (owned) {
+				provider.release();
+			}
+		}
+	}
+
+	/**
+	 * exécute une lecture sur un shard, sans transaction, avec l'entity
+	 * manager du thread courant, fermé à la fin si le thread n'avait pas déjà
+	 * une transaction active sur ce shard.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param shard
+	 *            : l'index du shard
+	 * @param work
+	 *            : la lecture
+	 * @return le résultat de la lecture
+	 */
+	private <R> R readOnShard(final int shard, final Function<AbstractGenericDaoImpl<ENTITY, PK>, R> work) {
+		final ThreadLocalEntityManagerProvider provider = this.providers.get(shard);
+		final boolean owned = !inCallerTransaction(provider);
+		try {
+			return work.apply(this.shards.get(shard));
+		} finally {
+			if (owned) {
+				provider.release();
+			}
+		}
+	}
+
+	/**
+	 * parcourt les shards l'un après l'autre ; l'entity manager d'un shard est
+	 * fermé à la fin de son stream si le thread n'avait pas déjà une
+	 * transaction active sur ce shard.
+	 *
+	 * @param work
+	 *            : le stream d'un shard
+	 * @return la concaténation des streams
+	 */
+	private Stream<ENTITY> streamOnShards(final Function<AbstractGenericDaoImpl<ENTITY, PK>, Stream<ENTITY>> work) {
+		return IntStream.range(0, this.shards.size()).boxed().flatMap(shard -> {
+			final ThreadLocalEntityManagerProvider provider = this.providers.get(shard);
+			final boolean owned = !inCallerTransaction(provider);
+			final Stream<ENTITY> entities = work.apply(this.shards.get(shard));
+			// flatMap ferme chaque stream une fois parcouru
+			return owned ? entities.onClose(provider::release) : entities;
+		});
+	}
+
+	/**
+	 * @param provider
+	 *            : le provider d'un shard
+	 * @return true si le thread courant a une transaction active sur ce shard
+	 */
+	private static boolean inCallerTransaction(final ThreadLocalEntityManagerProvider provider) {
+		final EntityManager current = provider.getCurrentEntityManager();
+		return current != null && current.getTransaction().isActive();
+	}
+
+	/**
+	 * exécute le travail sur tous les shards en parallèle, chacun avec son
+	 * entity manager, fermé à la fin.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param work
+	 *            : le travail d'un shard, reçoit son index
+	 * @return les résultats, dans l'ordre des shards
+	 */
+	private <R> List<R> onAllShards(final Function<Integer, R> work) {
+		final List<Future<R>> futures = new ArrayList<>(this.shards.size());
+		for (int i = 0; i < this.shards.size(); i++) {
+			final int shard = i;
+			// pas de transaction sur un thread du DAO : onShard ferme l'entity manager
+			futures.add(this.executor.submit(() -> this.onShard(shard, dao -> work.apply(shard))));
+		}
+		final List<R> results = new ArrayList<>(futures.size());
+		try {
+			for (final Future<R> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (final ExecutionException ex) {
+			futures.forEach(future -> future.cancel(true));
+			LOGGER.error(ex.getCause().getMessage(), ex.getCause());
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new DataAccessException(ex.getCause());
+		} catch (final InterruptedException ex) {
+			futures.forEach(future -> future.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new DataAccessException(ex);
+		}
+	}
+
+	/**
+	 * concatène les listes de tous les shards.
+	 *
+	 * @param <C>
+	 *            : le type des éléments
+	 * @param work
+	 *            : la requête d'un shard
+	 * @return la concaténation
+	 */
+	private <C> List<C> concatAllShards(final Function<AbstractGenericDaoImpl<ENTITY, PK>, List<C>> work) {
+		final List<List<C>> parts = this.onAllShards(shard -> work.apply(this.shards.get(shard)));
+		int size = 0;
+		for (final List<C> part : parts) {
+			size += part.size();
+		}
+		final List<C> merged = new ArrayList<>(size);
+		parts.forEach(merged::addAll);
+		return merged;
+	}
+
+	/**
+	 * regroupe des éléments par shard en gardant leur position d'origine.
+	 *
+	 * @param <T>
+	 *            : le type des éléments
+	 * @param elements
+	 *            : les éléments
+	 * @param identifiantOf
+	 *            : l'identifiant d'un élément
+	 * @return pour chaque shard, les positions de ses éléments
+	 */
+	private <T> List<List<Integer>> groupByShard(final List<T> elements, final Function<T, PK> identifiantOf) {
+		final List<List<Integer>> groups = new ArrayList<>(this.shards.size());
+		for (int i = 0; i < this.shards.size(); i++) {
+			groups.add(new ArrayList<>());
+		}
+		for (int i = 0; i < elements.size(); i++) {
+			groups.get(this.shardOf(identifiantOf.apply(elements.get(i)))).add(i);
+		}
+		return groups;
+	}
+
+	/**
+	 * @param positions
+	 *            : des positions dans <code>elements</code>
+	 * @param elements
+	 *            : les éléments
+	 * @param <T>
+	 *            : le type des éléments
+	 * @return les éléments à ces positions
+	 */
+	private static <T> List<T> select(final List<Integer> positions, final List<T> elements) {
+		final List<T> selected = new ArrayList<>(positions.size());
+		for (final Integer position : positions) {
+			selected.add(elements.get(position));
+		}
+		return selected;
+	}
+
+	/**
+	 * retourne l'identifiant de l'entité.
+	 *
+	 * @param entity
+	 *            : l'entité
+	 * @return l'identifiant, null s'il n'est pas encore attribué
+	 */
+	@SuppressWarnings("unchecked")
+	private PK identifiantOf(final ENTITY entity) {
+		// lu sur la factory : pas d'entity manager ouvert sur le thread appelant
+		final Object identifiant = this.persistenceUnitUtil.getIdentifier(entity);
+		if (identifiant == null || !(this.persister.getIdentifierGenerator() instanceof Assigned)
+						&& Boolean.TRUE.equals(this.persister.getEntityMetamodel().getIdentifierProperty()
+										.getUnsavedValue().isUnsaved(identifiant))) {
+			return null;
+		}
+		return (PK) identifiant;
+	}
+
+	/**
+	 * attribue un identifiant aux entités qui n'en ont pas encore, avec le
+	 * générateur de l'entité sur le premier shard, en une seule transaction.
+	 *
+	 * @param entities
+	 *            : les entités
+	 */
+	private void assignIdentifiants(final List<ENTITY> entities) {
+		final List<ENTITY> missing = new ArrayList<>();
+		for (final ENTITY entity : entities) {
+			if (this.identifiantOf(entity) == null) {
+				missing.add(entity);
+			}
+		}
+		if (missing.isEmpty()) {
+			return;
+		}
+		this.inShardTransaction(0, entityManager -> {
+			final SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+			for (final ENTITY entity : missing) {
+				final Serializable generated = this.persister.getIdentifierGenerator().generate(session, entity);
+				this.persister.setIdentifier(entity, generated, session);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * insère les entités, dont l'identifiant est déjà attribué, sur un shard.
+	 *
+	 * @param shard
+	 *            : l'index du shard
+	 * @param newInstances
+	 *            : les entités
+	 */
+	private void insert(final int shard, final List<ENTITY> newInstances) {
+		this.onShard(shard, dao -> {
+			final Session session = this.providers.get(shard).getEntityManager().unwrap(Session.class);
+			for (final ENTITY newInstance : newInstances) {
+				StringFieldNormalizer.of(newInstance.getClass()).nullifyEmptyStrings(newInstance);
+				session.replicate(newInstance, ReplicationMode.EXCEPTION);
+			}
+			session.flush();
+			return null;
+		});
+	}
+
+	@Override
+	public void create(final ENTITY newInstance) {
+		final List<ENTITY> entities = Collections.singletonList(newInstance);
+		this.assignIdentifiants(entities);
+		this.insert(this.shardOf(this.requireIdentifiant(newInstance)), entities);
+	}
+
+	@Override
+	public void createAll(final Collection<ENTITY> newInstances) {
+		final List<ENTITY> entities = new ArrayList<>(newInstances);
+		this.assignIdentifiants(entities);
+		final List<List<Integer>> groups = this.groupByShard(entities, this::identifiantOf);
+		for (int shard = 0; shard < groups.size(); shard++) {
+			if (!groups.get(shard).isEmpty()) {
+				this.insert(shard, select(groups.get(shard), entities));
+			}
+		}
+	}
+
+	@Override
+	public ENTITY update(final ENTITY transientObject) {
+		return this.onShard(this.shardOf(this.requireIdentifiant(transientObject)),
+						dao -> dao.update(transientObject));
+	}
+
+	@Override
+	public List<ENTITY> updateAll(final Collection<ENTITY> transientObjects) {
+		final List<ENTITY> entities = new ArrayList<>(transientObjects);
+		final List<List<Integer>> groups = this.groupByShard(entities, this::requireIdentifiant);
+		final List<ENTITY> merged = new ArrayList<>(Collections.nCopies(entities.size(), (ENTITY) null));
+		for (int shard = 0; shard < groups.size(); shard++) {
+			final List<Integer> positions = groups.get(shard);
+			if (!positions.isEmpty()) {
+				final List<ENTITY> updated = this.onShard(shard, dao -> dao.updateAll(select(positions, entities)));
+				for (int i = 0; i < positions.size(); i++) {
+					merged.set(positions.get(i), updated.get(i));
+				}
+			}
+		}
+		return merged;
+	}
+
+	@Override
+	public int updateAttributes(final PK identifiant, final Map<String, Object> attributes) {
+		return this.onShard(this.shardOf(identifiant), dao -> dao.updateAttributes(identifiant, attributes));
+	}
+
+	@Override
+	public int updateChanged(final ENTITY original, final ENTITY modified) {
+		return this.onShard(this.shardOf(this.requireIdentifiant(modified)),
+						dao -> dao.updateChanged(original, modified));
+	}
+
+	@Override
+	public void delete(final ENTITY persistentObject) {
+		this.onShard(this.shardOf(this.requireIdentifiant(persistentObject)), dao -> {
+			dao.delete(persistentObject);
+			return null;
+		});
+	}
+
+	@Override
+	public void deleteById(final PK identifiant) {
+		this.onShard(this.shardOf(identifiant), dao -> {
+			dao.deleteById(identifiant);
+			return null;
+		});
+	}
+
+	@Override
+	public int deleteAllById(final Collection<PK> identifiants) {
+		final List<PK> ids = new ArrayList<>(identifiants);
+		final List<List<Integer>> groups = this.groupByShard(ids, Function.identity());
+		int deleted = 0;
+		for (int shard = 0; shard < groups.size(); shard++) {
+			final List<Integer> positions = groups.get(shard);
+			if (!positions.isEmpty()) {
+				deleted += this.onShard(shard, dao -> dao.deleteAllById(select(positions, ids)));
+			}
+		}
+		return deleted;
+	}
+
+	@Override
+	public ENTITY read(final PK id) {
+		return this.readOnShard(this.shardOf(id), dao -> dao.read(id));
+	}
+
+	@Override
+	public List<ENTITY> readAllById(final Collection<PK> ids) {
+		final List<PK> identifiants = new ArrayList<>(ids);
+		final List<List<Integer>> groups = this.groupByShard(identifiants, Function.identity());
+		final List<List<ENTITY>> parts = this.onAllShards(shard -> groups.get(shard).isEmpty()
+						? Collections.<ENTITY> emptyList()
+						: this.shards.get(shard).readAllById(select(groups.get(shard), identifiants)));
+		final List<ENTITY> entities = new ArrayList<>(Collections.nCopies(identifiants.size(), (ENTITY) null));
+		for (int shard = 0; shard < groups.size(); shard++) {
+			final List<Integer> positions = groups.get(shard);
+			for (int i = 0; i < positions.size(); i++) {
+				entities.set(positions.get(i), parts.get(shard).get(i));
+			}
+		}
+		return entities;
+	}
+
+	@Override
+	public long count() {
+		long count = 0;
+		for (final Long part : this.onAllShards(shard -> this.shards.get(shard).count())) {
+			count += part;
+		}
+		return count;
+	}
+
+	@Override
+	public List<ENTITY> readAll() {
+		return this.concatAllShards(IGenericDao::readAll);
+	}
+
+	@Override
+	public List<ENTITY> readAll(final Order... orders) {
+		final List<SingularAttribute<?, ?>> attributes = attributesOf(orders);
+		final List<List<ENTITY>> parts = this.onAllShards(shard -> {
+			// les order by sont refaits sur la racine de chaque shard
+			final AbstractGenericDaoImpl<ENTITY, PK> dao = this.shards.get(shard);
+			final CriteriaBuilder cb = dao.getReadCriteriaBuilder();
+			final CriteriaQuery<ENTITY> cq = cb.createQuery(dao.getEntityClass());
+			final Root<ENTITY> root = cq.from(dao.getEntityClass());
+			final List<Order> shardOrders = new ArrayList<>(orders.length);
+			for (int i = 0; i < orders.length; i++) {
+				final Path<?> path = root.get(attributes.get(i).getName());
+				shardOrders.add(orders[i].isAscending() ? cb.asc(path) : cb.desc(path));
+			}
+			cq.select(root).orderBy(shardOrders);
+			return dao.findAllByCriteriaQuery(cq, null, null);
+		});
+		return mergeSorted(parts, comparatorOf(orders, attributes), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * parcourt les shards l'un après l'autre, chacun via un curseur.
+	 *
+	 * @return <code>Stream</code> des résultats, sans ordre entre shards
+	 */
+	@Override
+	public Stream<ENTITY> streamAll() {
+		return this.streamOnShards(IGenericDao::streamAll);
+	}
+
+	/**
+	 * lit les colonnes de chaque shard en parallèle puis les concatène dans
+	 * l'ordre des shards.
+	 *
+	 * @return <code>ColumnarResult</code>
+	 */
+	@Override
+	public ColumnarResult<ENTITY> readAllColumnar() {
+		final List<ColumnarResult<ENTITY>> parts = this.onAllShards(shard -> this.shards.get(shard).readAllColumnar());
+		if (parts.size() == 1) {
+			return parts.get(0);
+		}
+		final ColumnarResult.Builder<ENTITY> builder = ColumnarResult.builder(AbstractGenericDaoImpl.basicAttributes(
+						this.providers.get(0).getEntityManagerFactory().getMetamodel()
+										.entity(this.shards.get(0).getEntityClass())));
+		parts.forEach(builder::addAll);
+		return builder.build();
+	}
+
+	@Override
+	public <K extends Comparable<? super K>> KeysetPage<ENTITY, K> readPage(
+					final SingularAttribute<? super ENTITY, K> sortKey, final K lastSeen, final int pageSize) {
+		final List<KeysetPage<ENTITY, K>> pages = this.onAllShards(
+						shard -> this.shards.get(shard).readPage(sortKey, lastSeen, pageSize));
+		final List<List<ENTITY>> parts = new ArrayList<>(pages.size());
+		boolean moreOnShards = false;
+		for (final KeysetPage<ENTITY, K> page : pages) {
+			parts.add(page.getContent());
+			moreOnShards |= page.hasNext();
+		}
+		final Comparator<ENTITY> bySortKey = Comparator.comparing(
+						entity -> AbstractGenericDaoImpl.<K> readAttribute(entity, sortKey));
+		final List<ENTITY> merged = mergeSorted(parts, bySortKey, pageSize + 1);
+		if (merged.size() <= pageSize && !moreOnShards) {
+			return new KeysetPage<>(merged, null);
+		}
+		final List<ENTITY> content = new ArrayList<>(merged.subList(0, Math.min(pageSize, merged.size())));
+		return new KeysetPage<>(content,
+						AbstractGenericDaoImpl.readAttribute(content.get(content.size() - 1), sortKey));
+	}
+
+	@Override
+	public List<ENTITY> findAllByAttributes(final Map<String, Object> attributes) {
+		return this.concatAllShards(dao -> dao.findAllByAttributes(attributes));
+	}
+
+	@Override
+	public List<ENTITY> findAllByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example) {
+		return this.concatAllShards(dao -> dao.findAllByBeanCritere(example));
+	}
+
+	@Override
+	public Stream<ENTITY> streamByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example) {
+		return this.streamOnShards(dao -> dao.streamByBeanCritere(example));
+	}
+
+	@Override
+	public final List<Tuple> findTuplesByAttributes(final Map<String, Object> attributes,
+					final List<SingularAttribute<? super ENTITY, ?>> selections) {
+		return this.concatAllShards(dao -> dao.findTuplesByAttributes(attributes, selections));
+	}
+
+	@Override
+	public final <DTO> List<DTO> findDtosByAttributes(final Map<String, Object> attributes,
+					final Class<DTO> dtoClass, final List<SingularAttribute<? super ENTITY, ?>> selections) {
+		return this.concatAllShards(dao -> dao.findDtosByAttributes(attributes, dtoClass, selections));
+	}
+
+	@Override
+	public final List<Tuple> findTuplesByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example,
+					final List<SingularAttribute<? super ENTITY, ?>> selections) {
+		return this.concatAllShards(dao -> dao.findTuplesByBeanCritere(example, selections));
+	}
+
+	@Override
+	public final <DTO> List<DTO> findDtosByBeanCritere(final IBeanAsSearchCriteres<ENTITY> example,
+					final Class<DTO> dtoClass, final List<SingularAttribute<? super ENTITY, ?>> selections) {
+		return this.concatAllShards(dao -> dao.findDtosByBeanCritere(example, dtoClass, selections));
+	}
+
+	@Override
+	public void detachEntity(final ENTITY entity) {
+		this.readOnShard(this.shardOf(this.requireIdentifiant(entity)), dao -> {
+			dao.detachEntity(entity);
+			return null;
+		});
+	}
+
+	@Override
+	public int deleteAll() {
+		int deleted = 0;
+		for (final Integer part : this.onAllShards(shard -> this.shards.get(shard).deleteAll())) {
+			deleted += part;
+		}
+		return deleted;
+	}
+
+	/**
+	 * arrête les threads des interrogations parallèles.
+	 */
+	@Override
+	public void close() {
+		this.executor.shutdown();
+	}
+
+	/**
+	 * @param entity
+	 *            : l'entité
+	 * @return son identifiant
+	 */
+	private PK requireIdentifiant(final ENTITY entity) {
+		final PK identifiant = this.identifiantOf(entity);
+		if (identifiant == null) {
+			throw new IllegalArgumentException("L'entité n'a pas d'identifiant : impossible de trouver son shard");
+		}
+		return identifiant;
+	}
+
+	/**
+	 * retourne les attributs de l'entité portés par les order by.
+	 *
+	 * @param orders
+	 *            : les order by
+	 * @return les attributs, dans l'ordre des order by
+	 */
+	private static List<SingularAttribute<?, ?>> attributesOf(final Order... orders) {
+		final List<SingularAttribute<?, ?>> attributes = new ArrayList<>(orders.length);
+		for (final Order order : orders) {
+			final Expression<?> expression = order.getExpression();
+			if (!(expression instanceof Path) || !(((Path<?>) expression).getModel() instanceof SingularAttribute)) {
+				throw new IllegalArgumentException("Tri réparti possible seulement sur un attribut de l'entité");
+			}
+			attributes.add((SingularAttribute<?, ?>) ((Path<?>) expression).getModel());
+		}
+		return attributes;
+	}
+
+	/**
+	 * construit le comparateur équivalent aux order by. Les null sont en tête
+	 * en ordre croissant, comme dans hsqldb.
+	 *
+	 * @param orders
+	 *            : les order by
+	 * @param attributes
+	 *            : les attributs des order by
+	 * @return le comparateur
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <ENTITY> Comparator<ENTITY> comparatorOf(final Order[] orders,
+					final List<SingularAttribute<?, ?>> attributes) {
+		Comparator<ENTITY> comparator = (a, b) -> 0;
+		for (int i = 0; i < orders.length; i++) {
+			final SingularAttribute<?, Comparable> attribute = (SingularAttribute<?, Comparable>) attributes.get(i);
+			Comparator<Comparable> values = Comparator.nullsFirst(Comparator.naturalOrder());
+			if (!orders[i].isAscending()) {
+				values = values.reversed();
+			}
+			comparator = comparator.thenComparing(entity -> AbstractGenericDaoImpl.readAttribute(entity, attribute),
+							values);
+		}
+		return comparator;
+	}
+
+	/**
+	 * fusion ordonnée (k-way) de listes déjà triées.
+	 *
+	 * @param <C>
+	 *            : le type des éléments
+	 * @param parts
+	 *            : les listes triées
+	 * @param comparator
+	 *            : l'ordre des listes
+	 * @param limit
+	 *            : le nombre maximal d'éléments retournés
+	 * @return la liste fusionnée
+	 */
+	private static <C> List<C> mergeSorted(final List<List<C>> parts, final Comparator<? super C> comparator,
+					final int limit) {
+		int size = 0;
+		for (final List<C> part : parts) {
+			size += part.size();
+		}
+		final List<C> merged = new ArrayList<>(Math.min(size, limit));
+		final PriorityQueue<Head<C>> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+						(a, b) -> comparator.compare(a.value, b.value));
+		for (final List<C> part : parts) {
+			final Iterator<C> iterator = part.iterator();
+			if (iterator.hasNext()) {
+				heads.add(new Head<>(iterator.next(), iterator));
+			}
+		}
+		while (!heads.isEmpty() && merged.size() < limit) {
+			final Head<C> head = heads.poll();
+			merged.add(head.value);
+			if (head.rest.hasNext()) {
+				heads.add(new Head<>(head.rest.next(), head.rest));
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * tête d'une liste triée pendant la fusion.
+	 */
+	private static final class Head<C> {
+
+		private final C value;
+
+		private final Iterator<C> rest;
+
+		Head(final C value, final Iterator<C> rest) {
+			this.value = value;
+			this.rest = rest;
+		}
+	}
+
+}
@@ -0,0 +1,231 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.exception.BeanTechnicalException;
+import com.demo.conf.exception.DataAccessException;
+import com.demo.dao.IBulkDao;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implémentation de {@link IBulkDao} sur une <code>StatelessSession</code>
+ * hibernate : chaque appel ouvre sa session et sa transaction, les écritures
+ * sont envoyées par batch JDBC de <code>batchSize</code>. Comme create et
+ * update du DAO générique, les chaînes vides sont remplacées par null avant
+ * l'écriture.
+ * <p>
+ * Les exceptions hibernate (PersistenceException) sont remontées en {@link DataAccessException},
+ * celles de la normalisation des chaînes en {@link BeanTechnicalException}.
+ *
+ * @param <PK>
+ *            : la clé primaire
+ * @param <ENTITY>
+ *            : l'entité
+ */
+public class StatelessBulkDaoImpl<ENTITY, PK extends Serializable> implements IBulkDao<ENTITY, PK> {
+
+	/**
+	 * Le logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(StatelessBulkDaoImpl.class.getName());
+
+	/**
+	 * la class sur laquelle sont effectuée les requétes.
+	 */
+	private final Class<ENTITY> entityClass;
+
+	/**
+	 * la factory des sessions.
+	 */
+	private final SessionFactory sessionFactory;
+
+	/**
+	 * nombre d'entités par batch JDBC.
+	 */
+	private int batchSize = AbstractGenericDaoImpl.DEFAULT_BATCH_SIZE;
+
+	/**
+	 * fetch size JDBC du curseur de scroll.
+	 */
+	private int fetchSize = AbstractGenericDaoImpl.DEFAULT_FETCH_SIZE;
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param entityClass
+	 *            : la classe représentante
+	 * @param entityManagerFactory
+	 *            : la factory de l'unité de persistance
+	 */
+	public StatelessBulkDaoImpl(final Class<ENTITY> entityClass, final EntityManagerFactory entityManagerFactory) {
+		this.entityClass = entityClass;
+		this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public PK insert(final ENTITY newInstance) {
+		return this.inTransaction(session -> {
+			StringFieldNormalizer.of(newInstance.getClass()).nullifyEmptyStrings(newInstance);
+			return (PK) session.insert(newInstance);
+		});
+	}
+
+	@Override
+	public int insertAll(final Collection<ENTITY> newInstances) {
+		return this.inTransaction(session -> {
+			for (final ENTITY newInstance : newInstances) {
+				StringFieldNormalizer.of(newInstance.getClass()).nullifyEmptyStrings(newInstance);
+				session.insert(newInstance);
+			}
+			return newInstances.size();
+		});
+	}
+
+	@Override
+	public void update(final ENTITY detachedObject) {
+		this.inTransaction(session -> {
+			StringFieldNormalizer.of(detachedObject.getClass()).nullifyEmptyStrings(detachedObject);
+			session.update(detachedObject);
+			return null;
+		});
+	}
+
+	@Override
+	public int updateAll(final Collection<ENTITY> detachedObjects) {
+		return this.inTransaction(session -> {
+			for (final ENTITY detachedObject : detachedObjects) {
+				StringFieldNormalizer.of(detachedObject.getClass()).nullifyEmptyStrings(detachedObject);
+				session.update(detachedObject);
+			}
+			return detachedObjects.size();
+		});
+	}
+
+	@Override
+	public void delete(final ENTITY detachedObject) {
+		this.inTransaction(session -> {
+			session.delete(detachedObject);
+			return null;
+		});
+	}
+
+	@Override
+	public int deleteAll(final Collection<ENTITY> detachedObjects) {
+		return this.inTransaction(session -> {
+			detachedObjects.forEach(session::delete);
+			return detachedObjects.size();
+		});
+	}
+
+	@Override
+	public ENTITY get(final PK id) {
+		if (id == null) {
+			throw new IllegalArgumentException("L'identifiant de PK est NULL pour le get");
+		}
+		return this.inTransaction(session -> this.entityClass.cast(session.get(this.entityClass, id)));
+	}
+
+	@Override
+	public Stream<ENTITY> scroll() {
+		final StatelessSession session = this.sessionFactory.openStatelessSession();
+		try {
+			final String entityName = this.sessionFactory.getMetamodel().entity(this.entityClass).getName();
+			final org.hibernate.query.Query<ENTITY> query = session.createQuery("select e from " + entityName + " e",
+							this.entityClass);
+			query.setFetchSize(this.fetchSize);
+			final ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+			return StreamSupport.stream(new ScrollableResultsSpliterator<ENTITY>(results, null), false)
+							.onClose(() -> {
+								try {
+									results.close();
+								} finally {
+									session.close();
+								}
+							});
+		} catch (final PersistenceException ex) {
+			session.close();
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			throw new DataAccessException(ex);
+		}
+	}
+
+	/**
+	 * exécute le travail dans une session sans état et sa transaction, validée
+	 * à la fin ou annulée en cas d'erreur.
+	 *
+	 * @param <R>
+	 *            : le type du résultat
+	 * @param work
+	 *            : le travail
+	 * @return le résultat du travail
+	 */
+	private <R> R inTransaction(final Function<StatelessSession, R> work) {
+		final StatelessSession session = this.sessionFactory.openStatelessSession();
+		Transaction transaction = null;
+		try {
+			session.setJdbcBatchSize(this.batchSize);
+			transaction = session.beginTransaction();
+			final R result = work.apply(session);
+			transaction.commit();
+			return result;
+		} catch (final PersistenceException ex) {
+			rollback(transaction);
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			throw new DataAccessException(ex);
+		} catch (final DataAccessException | BeanTechnicalException ex) {
+			rollback(transaction);
+			LOGGER.error(ex.getMessage(), ex.fillInStackTrace());
+			throw ex;
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * annule la transaction si elle est encore active.
+	 *
+	 * @param transaction
+	 *            : la transaction, null si elle n'a pas pu commencer
+	 */
+	private static void rollback(final Transaction transaction) {
+		if (transaction != null && transaction.isActive()) {
+			transaction.rollback();
+		}
+	}
+
+	/**
+	 * @param batchSize
+	 *            : nombre d'entités par batch JDBC
+	 */
+	public final void setBatchSize(final int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize doit être strictement positif : " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param fetchSize
+	 *            : fetch size JDBC du curseur de scroll
+	 */
+	public final void setFetchSize(final int fetchSize) {
+		if (fetchSize <= 0) {
+			throw new IllegalArgumentException("fetchSize doit être strictement positif : " + fetchSize);
+		}
+		this.fetchSize = fetchSize;
+	}
+
+}
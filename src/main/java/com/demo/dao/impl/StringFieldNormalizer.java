@@ -0,0 +1,152 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.KeepEmptyStrings;
+import com.demo.conf.exception.BeanTechnicalException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remplace par null les champs String vides ou blancs d'un objet. Les champs
+ * (non statiques, non finaux, de toute la hiérarchie de classes) sont
+ * résolus une seule fois par classe en MethodHandles, puis mis en cache.
+ * Une entité annotée {@link KeepEmptyStrings} n'est pas modifiée.
+ */
+public final class StringFieldNormalizer {
+
+	/**
+	 * les normaliseurs, par classe.
+	 */
+	private static final ClassValue<StringFieldNormalizer> NORMALIZERS = new ClassValue<StringFieldNormalizer>() {
+		@Override
+		protected StringFieldNormalizer computeValue(final Class<?> type) {
+			return new StringFieldNormalizer(type);
+		}
+	};
+
+	/**
+	 * type des getters : (Object) String.
+	 */
+	private static final MethodType GETTER_TYPE = MethodType.methodType(String.class, Object.class);
+
+	/**
+	 * type des setters : (Object, String) void.
+	 */
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, String.class);
+
+	/**
+	 * les getters des champs String.
+	 */
+	private final MethodHandle[] getters;
+
+	/**
+	 * les setters des champs String, dans le même ordre.
+	 */
+	private final MethodHandle[] setters;
+
+	/**
+	 * true si la classe est annotée {@link KeepEmptyStrings}.
+	 */
+	private final boolean keepEmptyStrings;
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param type
+	 *            : la classe
+	 */
+	private StringFieldNormalizer(final Class<?> type) {
+		final List<MethodHandle> getterList = new ArrayList<>();
+		final List<MethodHandle> setterList = new ArrayList<>();
+		this.keepEmptyStrings = type.isAnnotationPresent(KeepEmptyStrings.class);
+		if (!this.keepEmptyStrings) {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			for (Class<?> current = type; current != null && current != Object.class; current = current
+							.getSuperclass()) {
+				for (final Field f : current.getDeclaredFields()) {
+					if (f.getType().equals(String.class) && !Modifier.isStatic(f.getModifiers())
+									&& !Modifier.isFinal(f.getModifiers())) {
+						f.setAccessible(true);
+						try {
+							getterList.add(lookup.unreflectGetter(f).asType(GETTER_TYPE));
+							setterList.add(lookup.unreflectSetter(f).asType(SETTER_TYPE));
+						} catch (final IllegalAccessException e) {
+							throw new BeanTechnicalException(e);
+						}
+					}
+				}
+			}
+		}
+		this.getters = getterList.toArray(new MethodHandle[0]);
+		this.setters = setterList.toArray(new MethodHandle[0]);
+	}
+
+	/**
+	 * @param type
+	 *            : la classe
+	 * @return le normaliseur de la classe
+	 */
+	public static StringFieldNormalizer of(final Class<?> type) {
+		return NORMALIZERS.get(type);
+	}
+
+	/**
+	 * nullifies the empty strings of the object.
+	 *
+	 * @param o
+	 *            : the object, instance de la classe du normaliseur
+	 * @throws BeanTechnicalException
+	 *             exception
+	 */
+	public void nullifyEmptyStrings(final Object o) throws BeanTechnicalException {
+		try {
+			for (int i = 0; i < this.getters.length; i++) {
+				final String value = (String) this.getters[i].invokeExact(o);
+				if (value != null && isBlank(value)) {
+					this.setters[i].invokeExact(o, (String) null);
+				}
+			}
+		} catch (final RuntimeException | Error e) {
+			throw e;
+		} catch (final Throwable e) {
+			throw new BeanTechnicalException(e);
+		}
+	}
+
+	/**
+	 * applique la même règle à une valeur destinée à un attribut de la classe
+	 * (mise à jour partielle) : une chaîne vide devient null.
+	 *
+	 * @param value
+	 *            : la valeur
+	 * @return la valeur, ou null si c'est une chaîne vide
+	 */
+	public Object nullifyIfEmpty(final Object value) {
+		if (!this.keepEmptyStrings && value instanceof String && isBlank((String) value)) {
+			return null;
+		}
+		return value;
+	}
+
+	/**
+	 * équivalent de <code>value.trim().isEmpty()</code> sans allocation.
+	 *
+	 * @param value
+	 *            : la chaîne
+	 * @return true si la chaîne ne contient que des caractères &lt;= ' '
+	 */
+	static boolean isBlank(final String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,435 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.conf.metrics.LatencyHistogram;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.PersistenceUnitUtil;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Regroupe les créations de plusieurs threads dans une seule transaction
+ * (group commit) : les entités soumises par {@link #create(Object)} sont
+ * accumulées puis créées par {@link AbstractGenericDaoImpl#createAll} dans
+ * une transaction, en batch JDBC, par un thread dédié. Un lot part quand il
+ * atteint <code>maxBatchSize</code> entités ou quand sa première entité
+ * attend depuis <code>maxDelay</code>.
+ * <p>
+ * Chaque appel reçoit un future complété avec l'identifiant généré après le
+ * commit, ou avec l'erreur. Un lot en échec est annulé puis rejoué entité par
+ * entité, chacune dans sa transaction : seuls les appels fautifs échouent.
+ * L'identifiant (et la version) attribués par le persist annulé sont remis à
+ * leur valeur d'origine, l'entité peut donc être soumise à nouveau. Le DAO
+ * doit obtenir son entity manager du {@link ThreadLocalEntityManagerProvider}
+ * passé au constructeur.
+ *
+ * @param <PK>
+ *            : la clé primaire
+ * @param <ENTITY>
+ *            : l'entité
+ */
+public class WriteBehindBuffer<ENTITY, PK extends Serializable> implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindBuffer.class.getName());
+
+	/**
+	 * taille de lot par défaut.
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+	/**
+	 * attente maximale par défaut d'une entité avant l'envoi de son lot, en
+	 * millisecondes.
+	 */
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 5;
+
+	/**
+	 * nombre maximal par défaut d'entités en attente avant de bloquer les
+	 * appelants.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+	/**
+	 * numéro des buffers, pour nommer les threads.
+	 */
+	private static final AtomicInteger BUFFER_NUMBER = new AtomicInteger();
+
+	private final AbstractGenericDaoImpl<ENTITY, PK> dao;
+
+	private final ThreadLocalEntityManagerProvider entityManagerProvider;
+
+	private final PersistenceUnitUtil persistenceUnitUtil;
+
+	/**
+	 * pour remettre l'identifiant et la version d'une entité après un
+	 * rollback.
+	 */
+	private final EntityPersister persister;
+
+	private final int maxBatchSize;
+
+	private final long maxDelayNanos;
+
+	/**
+	 * les créations en attente.
+	 */
+	private final BlockingQueue<Pending<ENTITY, PK>> queue;
+
+	/**
+	 * le thread d'écriture.
+	 */
+	private final Thread writer;
+
+	private volatile boolean closed;
+
+	/**
+	 * true quand le thread d'écriture est arrêté : plus rien n'est lu dans la
+	 * file.
+	 */
+	private volatile boolean stopped;
+
+	private final LongAdder batches = new LongAdder();
+
+	private final LongAdder rows = new LongAdder();
+
+	private final LongAdder failedBatches = new LongAdder();
+
+	private final LongAdder failedRows = new LongAdder();
+
+	/**
+	 * durée des transactions des lots.
+	 */
+	private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+	/**
+	 * Constructeur avec les valeurs par défaut : lots de
+	 * {@value #DEFAULT_MAX_BATCH_SIZE} entités ou
+	 * {@value #DEFAULT_MAX_DELAY_MILLIS} ms.
+	 *
+	 * @param dao
+	 *            : le DAO, qui doit utiliser <code>entityManagerProvider</code>
+	 * @param entityManagerProvider
+	 *            : le provider d'entity manager du DAO
+	 */
+	public WriteBehindBuffer(final AbstractGenericDaoImpl<ENTITY, PK> dao,
+					final ThreadLocalEntityManagerProvider entityManagerProvider) {
+		this(dao, entityManagerProvider, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, TimeUnit.MILLISECONDS,
+						DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Constructeur.
+	 *
+	 * @param dao
+	 *            : le DAO, qui doit utiliser <code>entityManagerProvider</code>
+	 * @param entityManagerProvider
+	 *            : le provider d'entity manager du DAO
+	 * @param maxBatchSize
+	 *            : nombre d'entités par lot
+	 * @param maxDelay
+	 *            : attente maximale d'une entité avant l'envoi de son lot
+	 * @param unit
+	 *            : l'unité de <code>maxDelay</code>
+	 * @param queueCapacity
+	 *            : nombre d'entités en attente au-delà duquel les appelants
+	 *            sont bloqués
+	 */
+	public WriteBehindBuffer(final AbstractGenericDaoImpl<ENTITY, PK> dao,
+					final ThreadLocalEntityManagerProvider entityManagerProvider, final int maxBatchSize,
+					final long maxDelay, final TimeUnit unit, final int queueCapacity) {
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("maxBatchSize doit être strictement positif : " + maxBatchSize);
+		}
+		if (maxDelay < 0) {
+			throw new IllegalArgumentException("maxDelay doit être positif : " + maxDelay);
+		}
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity doit être strictement positif : " + queueCapacity);
+		}
+		this.dao = dao;
+		this.entityManagerProvider = entityManagerProvider;
+		this.persistenceUnitUtil = entityManagerProvider.getEntityManagerFactory().getPersistenceUnitUtil();
+		this.persister = entityManagerProvider.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+						.getMetamodel().entityPersister(dao.getEntityClass());
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		this.queue = new LinkedBlockingQueue<>(queueCapacity);
+		this.writer = new Thread(this::writeLoop, "write-behind-" + BUFFER_NUMBER.incrementAndGet());
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * soumet une création. L'appelant est bloqué si la file est pleine.
+	 *
+	 * @param newInstance
+	 *            : l'entité à créer
+	 * @return l'identifiant généré, connu après le commit du lot
+	 */
+	public CompletableFuture<PK> create(final ENTITY newInstance) {
+		if (newInstance == null) {
+			throw new IllegalArgumentException("L'entité à créer est NULL");
+		}
+		if (this.closed) {
+			throw new IllegalStateException("le buffer d'écriture est fermé");
+		}
+		final Pending<ENTITY, PK> pending = new Pending<>(newInstance);
+		try {
+			this.queue.put(pending);
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			pending.future.completeExceptionally(ex);
+			return pending.future;
+		}
+		// le thread d'écriture a pu s'arrêter entre le test de closed et le put :
+		// s'il ne l'a pas vue, l'entité est retirée ici
+		if (this.stopped && this.queue.remove(pending)) {
+			pending.future.completeExceptionally(new IllegalStateException("le buffer d'écriture est fermé"));
+		}
+		return pending.future;
+	}
+
+	private void writeLoop() {
+		final List<Pending<ENTITY, PK>> batch = new ArrayList<>(this.maxBatchSize);
+		try {
+			while (!this.closed || !this.queue.isEmpty()) {
+				final Pending<ENTITY, PK> first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				final long deadline = System.nanoTime() + this.maxDelayNanos;
+				while (batch.size() < this.maxBatchSize) {
+					if (this.queue.drainTo(batch, this.maxBatchSize - batch.size()) > 0) {
+						continue;
+					}
+					final long remaining = deadline - System.nanoTime();
+					final Pending<ENTITY, PK> next = remaining > 0
+									? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				this.write(batch);
+				batch.clear();
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			this.stop(batch, new IllegalStateException("buffer d'écriture interrompu", ex));
+		} finally {
+			this.stop(batch, new IllegalStateException("le buffer d'écriture est fermé"));
+		}
+	}
+
+	/**
+	 * arrête la lecture de la file et fait échouer les créations qui n'ont
+	 * pas été écrites.
+	 *
+	 * @param batch
+	 *            : le lot en cours
+	 * @param cause
+	 *            : l'erreur des créations non écrites
+	 */
+	private void stop(final List<Pending<ENTITY, PK>> batch, final RuntimeException cause) {
+		this.closed = true;
+		this.stopped = true;
+		batch.forEach(pending -> pending.future.completeExceptionally(cause));
+		Pending<ENTITY, PK> pending;
+		while ((pending = this.queue.poll()) != null) {
+			pending.future.completeExceptionally(cause);
+		}
+	}
+
+	/**
+	 * crée le lot dans une transaction puis complète ses futures. Si le lot
+	 * échoue, ses entités sont rejouées une par une.
+	 *
+	 * @param batch
+	 *            : le lot
+	 */
+	private void write(final List<Pending<ENTITY, PK>> batch) {
+		final List<ENTITY> entities = new ArrayList<>(batch.size());
+		for (final Pending<ENTITY, PK> pending : batch) {
+			entities.add(pending.entity);
+			pending.saveState(this.persister);
+		}
+		final long started = System.nanoTime();
+		try {
+			this.entityManagerProvider.inTransaction(entityManager -> {
+				this.dao.createAll(entities);
+				return null;
+			});
+		} catch (final Throwable ex) {
+			// Error comprise : le thread d'écriture doit survivre, sinon toutes
+			// les créations suivantes attendent indéfiniment
+			this.failedBatches.increment();
+			LOGGER.error(ex.getMessage(), ex);
+			batch.forEach(pending -> pending.restoreState(this.persister));
+			if (batch.size() == 1 || ex instanceof Error) {
+				this.failedRows.add(batch.size());
+				batch.forEach(pending -> pending.future.completeExceptionally(ex));
+			} else {
+				batch.forEach(this::writeOne);
+			}
+			return;
+		} finally {
+			this.entityManagerProvider.release();
+			this.flushLatency.record(System.nanoTime() - started);
+		}
+		this.batches.increment();
+		this.rows.add(batch.size());
+		batch.forEach(this::complete);
+	}
+
+	/**
+	 * crée une entité d'un lot en échec dans sa propre transaction.
+	 *
+	 * @param pending
+	 *            : la création
+	 */
+	private void writeOne(final Pending<ENTITY, PK> pending) {
+		try {
+			this.entityManagerProvider.inTransaction(entityManager -> {
+				this.dao.create(pending.entity);
+				return null;
+			});
+		} catch (final Throwable ex) {
+			this.failedRows.increment();
+			pending.restoreState(this.persister);
+			pending.future.completeExceptionally(ex);
+			return;
+		} finally {
+			this.entityManagerProvider.release();
+		}
+		this.rows.increment();
+		this.complete(pending);
+	}
+
+	/**
+	 * complète le future d'une création validée avec l'identifiant généré.
+	 *
+	 * @param pending
+	 *            : la création
+	 */
+	private void complete(final Pending<ENTITY, PK> pending) {
+		@SuppressWarnings("unchecked")
+		final PK id = (PK) this.persistenceUnitUtil.getIdentifier(pending.entity);
+		pending.future.complete(id);
+	}
+
+	/**
+	 * refuse les nouvelles créations, écrit celles en attente puis arrête le
+	 * thread d'écriture.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		try {
+			this.writer.join(TimeUnit.MINUTES.toMillis(1));
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return le nombre d'entités en attente
+	 */
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return le nombre de lots validés
+	 */
+	public long getBatchCount() {
+		return this.batches.sum();
+	}
+
+	/**
+	 * @return le nombre d'entités créées
+	 */
+	public long getRowCount() {
+		return this.rows.sum();
+	}
+
+	/**
+	 * @return le nombre de lots en échec, rejoués entité par entité
+	 */
+	public long getFailedBatchCount() {
+		return this.failedBatches.sum();
+	}
+
+	/**
+	 * @return le nombre d'entités dont la création a échoué
+	 */
+	public long getFailedRowCount() {
+		return this.failedRows.sum();
+	}
+
+	/**
+	 * @return la durée des transactions des lots
+	 */
+	public LatencyHistogram.Snapshot getFlushLatency() {
+		return this.flushLatency.snapshot();
+	}
+
+	/**
+	 * une création en attente.
+	 */
+	private static final class Pending<ENTITY, PK> {
+
+		private final ENTITY entity;
+
+		private final CompletableFuture<PK> future = new CompletableFuture<>();
+
+		/**
+		 * identifiant et version avant le persist.
+		 */
+		private Serializable identifier;
+
+		private Object version;
+
+		Pending(final ENTITY entity) {
+			this.entity = entity;
+		}
+
+		/**
+		 * retient l'identifiant et la version de l'entité avant le persist.
+		 *
+		 * @param persister
+		 *            : le persister de l'entité
+		 */
+		void saveState(final EntityPersister persister) {
+			this.identifier = persister.getIdentifier(this.entity, null);
+			if (persister.isVersioned()) {
+				this.version = persister.getVersion(this.entity);
+			}
+		}
+
+		/**
+		 * remet l'identifiant et la version attribués par un persist annulé.
+		 *
+		 * @param persister
+		 *            : le persister de l'entité
+		 */
+		void restoreState(final EntityPersister persister) {
+			persister.setIdentifier(this.entity, this.identifier, null);
+			if (persister.isVersioned()) {
+				persister.setPropertyValue(this.entity, persister.getVersionProperty(), this.version);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.demo.conf;
+
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Routage des lectures entre le primaire et le réplica. Les deux unités sont
+ * des bases hsqldb distinctes, sans réplication : une ligne écrite sur le
+ * primaire n'est jamais vue sur le réplica.
+ */
+public class ReplicaRoutingEntityManagerProviderTest {
+
+    private static EntityManagerFactory primaryFactory;
+
+    private static EntityManagerFactory replicaFactory;
+
+    private ReplicaRoutingEntityManagerProvider provider;
+
+    private PersonDaoImpl personDao;
+
+    @BeforeClass
+    public static void createEntityManagerFactories() {
+        primaryFactory = Persistence.createEntityManagerFactory("persistence-unit-primary",
+                Collections.singletonMap("hibernate.show_sql", "false"));
+        replicaFactory = Persistence.createEntityManagerFactory("persistence-unit-replica",
+                Collections.singletonMap("hibernate.show_sql", "false"));
+    }
+
+    @AfterClass
+    public static void closeEntityManagerFactories() {
+        primaryFactory.close();
+        replicaFactory.close();
+    }
+
+    @Before
+    public void setUp() {
+        this.provider = new ReplicaRoutingEntityManagerProvider(primaryFactory, replicaFactory);
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManagerProvider(this.provider);
+    }
+
+    @After
+    public void tearDown() {
+        this.provider.inTransaction(em -> em.createQuery("delete from person").executeUpdate());
+        this.provider.release();
+    }
+
+    @Test
+    public void readsInATransactionSeeItsOwnWrites() {
+        final int id = this.provider.inTransaction(em -> {
+            final Person person = new Person();
+            person.setName("bob");
+            this.personDao.create(person);
+            assertSame(em, this.provider.getReadEntityManager());
+            assertEquals(1, this.personDao.findByName("bob").size());
+            assertEquals(1L, this.personDao.count());
+            return person.getId();
+        });
+        this.provider.release();
+
+        // hors transaction : le réplica, qui n'a pas reçu la ligne
+        assertNull(this.personDao.read(id));
+        assertTrue(this.personDao.findByName("bob").isEmpty());
+        assertEquals(0L, this.personDao.count());
+    }
+
+    @Test
+    public void readsOutsideATransactionDoNotOpenThePrimary() {
+        this.personDao.findByName("bob");
+        this.personDao.readAll();
+        this.personDao.count();
+        assertNull(this.provider.getCurrentEntityManager());
+    }
+
+}
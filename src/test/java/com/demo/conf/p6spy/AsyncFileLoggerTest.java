@@ -0,0 +1,101 @@
+package com.demo.conf.p6spy;
+
+import com.p6spy.engine.logging.Category;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Écriture et rotation du fichier de l'appender asynchrone.
+ */
+public class AsyncFileLoggerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rotationKeepsTheConfiguredFiles() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("spy.log");
+        final AsyncFileLogger logger = new AsyncFileLogger(file, 1024, 1, 100, 2,
+                AsyncFileLogger.OverflowPolicy.BLOCK, false);
+        for (int i = 0; i < 20; i++) {
+            logger.logText(String.format("ligne %02d : 0123456789", i));
+        }
+        logger.close();
+        assertEquals(20, logger.getWritten());
+        assertEquals(0, logger.getFailures());
+        assertTrue(logger.getRotations() > 0);
+        assertTrue(Files.exists(file.resolveSibling("spy.log.1")));
+        assertTrue(Files.exists(file.resolveSibling("spy.log.2")));
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals("ligne 19 : 0123456789", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void failedRotationKeepsWritingToTheCurrentFile() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("spy.log");
+        // spy.log.1 est un répertoire non vide : la rotation ne peut pas le remplacer
+        final Path rotated = Files.createDirectory(file.resolveSibling("spy.log.1"));
+        Files.createFile(rotated.resolve("busy"));
+        final AsyncFileLogger logger = new AsyncFileLogger(file, 1024, 1, 100, 1,
+                AsyncFileLogger.OverflowPolicy.BLOCK, false);
+        for (int i = 0; i < 20; i++) {
+            logger.logText(String.format("ligne %02d : 0123456789", i));
+        }
+        logger.close();
+        assertEquals(20, logger.getWritten());
+        assertEquals(0, logger.getDropped());
+        assertEquals(0, logger.getRotations());
+        assertTrue(logger.getFailures() > 0);
+        assertEquals(20, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void unopenableFileDropsEventsWithoutThrowing() throws IOException {
+        // le parent du fichier est un fichier ordinaire : l'ouverture échoue
+        final Path file = this.folder.newFile("blocker").toPath().resolve("spy.log");
+        final AsyncFileLogger logger = new AsyncFileLogger(file, 16, 4, 0, 0,
+                AsyncFileLogger.OverflowPolicy.BLOCK, false);
+        for (int i = 0; i < 5; i++) {
+            logger.logText("ligne " + i);
+        }
+        logger.close();
+        assertEquals(0, logger.getWritten());
+        assertEquals(5, logger.getDropped());
+        // une seule tentative d'ouverture
+        assertEquals(1, logger.getFailures());
+    }
+
+    @Test(timeout = 10000)
+    public void failingFormatStrategyDoesNotStopTheWriter() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("spy.log");
+        // petite file en BLOCK : si le thread d'écriture meurt, le test ne se termine pas
+        final AsyncFileLogger logger = new AsyncFileLogger(file, 4, 2, 0, 0,
+                AsyncFileLogger.OverflowPolicy.BLOCK, false);
+        logger.setStrategy((connectionId, now, elapsed, category, prepared, sql) -> {
+            if (sql.startsWith("delete")) {
+                throw new IllegalStateException("format impossible");
+            }
+            return sql;
+        });
+        for (int i = 0; i < 20; i++) {
+            final String sql = (i % 2 == 0 ? "select " : "delete ") + i;
+            logger.logSQL(1, "0", 0, Category.STATEMENT, sql, sql);
+        }
+        logger.close();
+        assertEquals(10, logger.getWritten());
+        assertEquals(10, logger.getDropped());
+        assertEquals(10, logger.getFailures());
+        assertEquals(10, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.demo.conf.p6spy;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.conf.exception.StatementBudgetException;
+import com.demo.dao.IPersonDao;
+import com.demo.dao.impl.PersonDaoImpl;
+import com.demo.entities.Person;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Budgets de requêtes sur l'unité de persistance p6spy.
+ */
+public class StatementScopeTest {
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private ThreadLocalEntityManagerProvider provider;
+
+    private PersonDaoImpl personDao;
+
+    @BeforeClass
+    public static void createEntityManagerFactory() {
+        entityManagerFactory = Persistence.createEntityManagerFactory("persistence-unit-p6spy",
+                Collections.singletonMap("hibernate.show_sql", "false"));
+    }
+
+    @AfterClass
+    public static void closeEntityManagerFactory() {
+        entityManagerFactory.close();
+    }
+
+    @Before
+    public void setUp() {
+        this.provider = new ThreadLocalEntityManagerProvider(entityManagerFactory);
+        this.personDao = new PersonDaoImpl();
+        this.personDao.setEntityManagerProvider(this.provider);
+    }
+
+    @After
+    public void tearDown() {
+        this.provider.inTransaction(em -> em.createQuery("delete from person").executeUpdate());
+        this.provider.release();
+    }
+
+    @Test
+    public void findByNameIsASingleStatement() {
+        this.createPersons(3);
+        try (StatementScope scope = StatementScope.open("findByName")) {
+            this.personDao.findByName("bob1");
+            scope.assertStatementCount(1);
+            scope.assertNoRepeatedShapes();
+        }
+    }
+
+    @Test
+    public void readLoopIsReportedAsNPlusOne() {
+        final List<Integer> ids = this.createPersons(5);
+        try (StatementScope scope = StatementScope.open("readLoop")) {
+            for (final Integer id : ids) {
+                this.personDao.read(id);
+            }
+            scope.assertStatementCount(ids.size());
+            scope.assertNoRepeatedShapes();
+            fail("N+1 non détecté");
+        } catch (final StatementBudgetException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("readLoop : N+1 probable"));
+        }
+    }
+
+    @Test
+    public void readAllByIdStaysWithinBudget() {
+        final List<Integer> ids = this.createPersons(5);
+        try (StatementScope scope = StatementScope.open("readAllById")) {
+            assertEquals(ids.size(), this.personDao.readAllById(ids).size());
+            scope.assertAtMost(1);
+        }
+    }
+
+    @Test
+    public void monitorChargesWritesToTheCallThatQueuedThem() {
+        final DaoStatementMonitor monitor = new DaoStatementMonitor(this.provider::getCurrentEntityManager);
+        final IPersonDao monitored = monitor.wrap(this.personDao, IPersonDao.class);
+        this.provider.inTransaction(em -> {
+            final Person person = new Person();
+            person.setName("bob");
+            monitored.create(person);
+            return monitored.findByName("bob");
+        });
+        // create : l'INSERT (et la séquence), findByName : le SELECT seul
+        assertTrue(monitor.getStatistics().toString(), monitor.getStatistics().get("IGenericDao.create")
+                .getStatements() >= 1);
+        assertEquals(1, monitor.getStatistics().get("IPersonDao.findByName").getMaxStatements());
+    }
+
+    private List<Integer> createPersons(final int count) {
+        final List<Integer> ids = this.provider.inTransaction(em -> {
+            final List<Integer> created = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final Person person = new Person();
+                person.setName("bob" + i);
+                this.personDao.create(person);
+                created.add(person.getId());
+            }
+            return created;
+        });
+        this.provider.getEntityManager().clear();
+        return ids;
+    }
+
+}
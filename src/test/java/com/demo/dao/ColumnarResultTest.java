@@ -0,0 +1,106 @@
+package com.demo.dao;
+
+import com.demo.entities.Person;
+import com.demo.entities.Person_;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fusion de résultats en colonnes par {@link ColumnarResult.Builder#addAll}.
+ */
+public class ColumnarResultTest {
+
+	private static EntityManagerFactory entityManagerFactory;
+
+	@BeforeClass
+	public static void createEntityManagerFactory() {
+		// le démarrage de l'unité remplit le métamodèle Person_
+		entityManagerFactory = Persistence.createEntityManagerFactory("persistence-unit",
+						Collections.singletonMap("hibernate.show_sql", "false"));
+	}
+
+	@AfterClass
+	public static void closeEntityManagerFactory() {
+		entityManagerFactory.close();
+	}
+
+	@Test
+	public void addAllRecodesOverlappingDictionaryValues() {
+		final ColumnarResult<Person> left = result(row(1, "bob"), row(2, null), row(3, "alice"));
+		final ColumnarResult<Person> right = result(row(4, "alice"), row(5, "carol"), row(6, null), row(7, "bob"));
+		final ColumnarResult<Person> merged = builder().addAll(left).addAll(right).addRow(row(8, "carol")).build();
+
+		assertEquals(8, merged.size());
+		final ColumnarResult.DictionaryColumn names = merged.getDictionaryColumn(Person_.name);
+		assertEquals(Arrays.<Object> asList("bob", "alice", "carol"), names.getDictionary());
+		final List<Object> values = new ArrayList<>();
+		for (int row = 0; row < merged.size(); row++) {
+			values.add(names.get(row));
+		}
+		assertEquals(Arrays.<Object> asList("bob", null, "alice", "alice", "carol", null, "bob", "carol"), values);
+		// une même valeur garde un seul code, quel que soit le résultat d'origine
+		assertEquals(names.getCode(2), names.getCode(3));
+		assertEquals(names.getCode(0), names.getCode(6));
+		assertEquals(names.getCode(4), names.getCode(7));
+		assertEquals(-1, names.getCode(1));
+		assertEquals(-1, names.getCode(5));
+		assertTrue(names.isNull(5));
+	}
+
+	@Test
+	public void addAllShiftsTheIntNullsByTheRowsAlreadyAdded() {
+		final ColumnarResult<Person> left = result(row(1, "bob"), row(null, "bob"), row(3, "bob"));
+		final ColumnarResult<Person> right = result(row(4, "alice"), row(null, "alice"));
+		final ColumnarResult<Person> merged = builder().addRow(row(0, "carol")).addAll(left).addAll(right).build();
+
+		final ColumnarResult.IntColumn ids = merged.getIntColumn(Person_.id);
+		assertEquals(6, merged.size());
+		for (int row = 0; row < merged.size(); row++) {
+			assertEquals("ligne " + row, row == 2 || row == 5, ids.isNull(row));
+		}
+		assertNull(ids.get(2));
+		assertNull(ids.get(5));
+		assertEquals(3, ids.getInt(3));
+		assertEquals(4, ids.getInt(4));
+		assertEquals(Integer.valueOf(1), ids.get(1));
+		// le résultat d'origine n'est pas modifié
+		assertTrue(left.getIntColumn(Person_.id).isNull(1));
+		assertFalse(left.getIntColumn(Person_.id).isNull(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void addAllRejectsOtherColumns() {
+		ColumnarResult.<Person> builder(Collections.singletonList(Person_.name)).addAll(result(row(1, "bob")));
+	}
+
+	private static ColumnarResult<Person> result(final Object[]... rows) {
+		final ColumnarResult.Builder<Person> builder = builder();
+		for (final Object[] row : rows) {
+			builder.addRow(row);
+		}
+		return builder.build();
+	}
+
+	private static ColumnarResult.Builder<Person> builder() {
+		return ColumnarResult.builder(Arrays.<SingularAttribute<? super Person, ?>> asList(Person_.id, Person_.name));
+	}
+
+	private static Object[] row(final Integer id, final String name) {
+		return new Object[] { id, name };
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.entities.Person;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Contrats des opérations du DAO générique.
+ */
+public class AbstractGenericDaoImplTest {
+
+	private static EntityManagerFactory entityManagerFactory;
+
+	private ThreadLocalEntityManagerProvider provider;
+
+	private PersonDaoImpl personDao;
+
+	@BeforeClass
+	public static void createEntityManagerFactory() {
+		entityManagerFactory = Persistence.createEntityManagerFactory("persistence-unit",
+						Collections.singletonMap("hibernate.show_sql", "false"));
+	}
+
+	@AfterClass
+	public static void closeEntityManagerFactory() {
+		entityManagerFactory.close();
+	}
+
+	@Before
+	public void setUp() {
+		this.provider = new ThreadLocalEntityManagerProvider(entityManagerFactory);
+		this.personDao = new PersonDaoImpl();
+		this.personDao.setEntityManagerProvider(this.provider);
+	}
+
+	@After
+	public void tearDown() {
+		this.provider.inTransaction(em -> em.createQuery("delete from person").executeUpdate());
+		this.provider.release();
+	}
+
+	@Test
+	public void deleteByIdRemovesTheEntity() {
+		final int id = this.createPerson("bob");
+		this.provider.inTransaction(em -> {
+			this.personDao.deleteById(id);
+			return null;
+		});
+		this.provider.release();
+		assertNull(this.personDao.read(id));
+	}
+
+	@Test
+	public void deleteByIdRejectsAnUnknownIdentifiant() {
+		final int id = this.createPerson("bob");
+		try {
+			this.provider.inTransaction(em -> {
+				this.personDao.deleteById(id + 1);
+				return null;
+			});
+			fail("identifiant inconnu accepté");
+		} catch (final IllegalArgumentException e) {
+			assertEquals(1L, this.personDao.count());
+		}
+	}
+
+	@Test
+	public void readAllByIdAcceptsSortedSets() {
+		// TreeSet.contains(null) lève une NPE
+		final int first = this.createPerson("bob");
+		final int second = this.createPerson("alice");
+		final List<Person> persons = this.personDao.readAllById(new TreeSet<>(Arrays.asList(second, first)));
+		assertEquals(2, persons.size());
+		assertEquals(Math.min(first, second), persons.get(0).getId());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void readAllByIdRejectsANullIdentifiant() {
+		this.personDao.readAllById(Collections.unmodifiableCollection(Arrays.asList(1, null)));
+	}
+
+	private int createPerson(final String name) {
+		final int id = this.provider.inTransaction(em -> {
+			final Person person = new Person();
+			person.setName(name);
+			this.personDao.create(person);
+			return person.getId();
+		});
+		this.provider.release();
+		return id;
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.entities.Person;
+import com.demo.entities.Person_;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parcours parallèle de la table person.
+ */
+public class ParallelTableScanTest {
+
+	private static EntityManagerFactory entityManagerFactory;
+
+	private ThreadLocalEntityManagerProvider provider;
+
+	private PersonDaoImpl personDao;
+
+	private ParallelTableScan<Person, Integer> scan;
+
+	@BeforeClass
+	public static void createEntityManagerFactory() {
+		entityManagerFactory = Persistence.createEntityManagerFactory("persistence-unit",
+						Collections.singletonMap("hibernate.show_sql", "false"));
+	}
+
+	@AfterClass
+	public static void closeEntityManagerFactory() {
+		entityManagerFactory.close();
+	}
+
+	@Before
+	public void setUp() {
+		this.provider = new ThreadLocalEntityManagerProvider(entityManagerFactory);
+		this.personDao = new PersonDaoImpl();
+		this.personDao.setEntityManagerProvider(this.provider);
+		this.scan = new ParallelTableScan<>(this.personDao, this.provider, Person_.id, 2, 4);
+		final List<Person> persons = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			final Person person = new Person();
+			person.setName("bob" + i);
+			persons.add(person);
+		}
+		this.provider.inTransaction(em -> {
+			this.personDao.createAll(persons);
+			return null;
+		});
+		this.provider.release();
+	}
+
+	@After
+	public void tearDown() {
+		this.provider.inTransaction(em -> em.createQuery("delete from person").executeUpdate());
+		this.provider.release();
+	}
+
+	@Test
+	public void forEachVisitsEveryEntityOnce() {
+		final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		assertEquals(500, this.scan.forEach(person -> assertTrue(ids.add(person.getId()))));
+		assertEquals(500, ids.size());
+	}
+
+	@Test
+	public void scanLeavesTheCallerUnitOfWorkAlone() {
+		final long scanned = this.provider.inTransaction(em -> {
+			final Person pending = new Person();
+			pending.setName("pending");
+			this.personDao.create(pending);
+			final long count = this.scan.scan(persons -> persons.count(), Long::sum);
+			// même entity manager, transaction toujours active
+			final EntityManager current = this.provider.getEntityManager();
+			assertSame(em, current);
+			assertTrue(current.getTransaction().isActive());
+			return count;
+		});
+		this.provider.release();
+		// l'écriture en attente n'était pas flushée : elle n'est pas vue par le
+		// parcours, mais elle est bien validée
+		assertEquals(500, scanned);
+		assertEquals(501L, this.personDao.count());
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.entities.Person;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Garde sur la taille du contexte de persistance.
+ */
+public class PersistenceContextGuardTest {
+
+	private static EntityManagerFactory entityManagerFactory;
+
+	private ThreadLocalEntityManagerProvider provider;
+
+	private PersonDaoImpl personDao;
+
+	private PersistenceContextGuard guard;
+
+	@BeforeClass
+	public static void createEntityManagerFactory() {
+		entityManagerFactory = Persistence.createEntityManagerFactory("persistence-unit",
+						Collections.singletonMap("hibernate.show_sql", "false"));
+	}
+
+	@AfterClass
+	public static void closeEntityManagerFactory() {
+		entityManagerFactory.close();
+	}
+
+	@Before
+	public void setUp() {
+		this.provider = new ThreadLocalEntityManagerProvider(entityManagerFactory);
+		this.personDao = new PersonDaoImpl();
+		this.personDao.setEntityManagerProvider(this.provider);
+		this.guard = new PersistenceContextGuard(100);
+		this.personDao.setPersistenceContextGuard(this.guard);
+	}
+
+	@After
+	public void tearDown() {
+		this.provider.inTransaction(em -> em.createQuery("delete from person").executeUpdate());
+		this.provider.release();
+	}
+
+	@Test
+	public void createLoopKeepsTheContextUnderTheThreshold() {
+		this.provider.inTransaction(em -> {
+			for (int i = 0; i < 1000; i++) {
+				this.personDao.create(newPerson("bob" + i));
+				assertTrue(this.managedEntities() <= 100);
+			}
+			return null;
+		});
+		assertEquals(1000, this.guard.getCheckCount());
+		assertEquals(9, this.guard.getTriggerCount());
+		assertEquals(101, this.guard.getMaxManagedEntities());
+		assertEquals(1000L, this.personDao.count());
+	}
+
+	@Test
+	public void createAllIsCheckedOnceOnItsLastBatch() {
+		this.provider.inTransaction(em -> {
+			this.personDao.createAll(newPersons(1030));
+			return null;
+		});
+		// createAll vide le contexte tous les 50 : il reste le dernier batch
+		assertEquals(1, this.guard.getCheckCount());
+		assertEquals(0, this.guard.getTriggerCount());
+		assertEquals(30, this.guard.getLastManagedEntities());
+		assertEquals(1030L, this.personDao.count());
+	}
+
+	@Test
+	public void createAllTailAddsUpWithEntitiesCreatedBefore() {
+		this.provider.inTransaction(em -> {
+			for (int i = 0; i < 90; i++) {
+				this.personDao.create(newPerson("bob" + i));
+			}
+			// moins d'un batch : pas de clear par createAll, 90 + 30 entités
+			this.personDao.createAll(newPersons(30));
+			return null;
+		});
+		assertEquals(91, this.guard.getCheckCount());
+		assertEquals(1, this.guard.getTriggerCount());
+		assertEquals(120, this.guard.getLastManagedEntities());
+		assertEquals(0, this.managedEntities());
+		assertEquals(120L, this.personDao.count());
+	}
+
+	@Test
+	public void updateAllIsCheckedOnceOnItsLastBatch() {
+		final List<Person> persons = newPersons(1030);
+		this.provider.inTransaction(em -> {
+			this.personDao.createAll(persons);
+			return null;
+		});
+		this.provider.getEntityManager().clear();
+		persons.forEach(person -> person.setName(person.getName() + "-modifié"));
+		final List<Person> merged = this.provider.inTransaction(em -> this.personDao.updateAll(persons));
+		assertEquals(1030, merged.size());
+		assertEquals(2, this.guard.getCheckCount());
+		assertEquals(0, this.guard.getTriggerCount());
+		assertEquals(30, this.guard.getLastManagedEntities());
+		assertEquals(1030, this.personDao.findByName("%-modifié").size());
+	}
+
+	private int managedEntities() {
+		return this.provider.getEntityManager().unwrap(SessionImplementor.class).getPersistenceContext()
+						.getNumberOfManagedEntities();
+	}
+
+	private static Person newPerson(final String name) {
+		final Person person = new Person();
+		person.setName(name);
+		return person;
+	}
+
+	private static List<Person> newPersons(final int count) {
+		final List<Person> persons = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			persons.add(newPerson("bob" + i));
+		}
+		return persons;
+	}
+
+}
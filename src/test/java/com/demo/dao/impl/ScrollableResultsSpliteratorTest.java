@@ -0,0 +1,96 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.entities.Person;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Détachement des entités parcourues par streamAll.
+ */
+public class ScrollableResultsSpliteratorTest {
+
+	private static EntityManagerFactory entityManagerFactory;
+
+	private ThreadLocalEntityManagerProvider provider;
+
+	private PersonDaoImpl personDao;
+
+	private List<Integer> ids;
+
+	@BeforeClass
+	public static void createEntityManagerFactory() {
+		entityManagerFactory = Persistence.createEntityManagerFactory("persistence-unit",
+						Collections.singletonMap("hibernate.show_sql", "false"));
+	}
+
+	@AfterClass
+	public static void closeEntityManagerFactory() {
+		entityManagerFactory.close();
+	}
+
+	@Before
+	public void setUp() {
+		this.provider = new ThreadLocalEntityManagerProvider(entityManagerFactory);
+		this.personDao = new PersonDaoImpl();
+		this.personDao.setEntityManagerProvider(this.provider);
+		this.ids = this.provider.inTransaction(em -> {
+			final List<Integer> created = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				final Person person = new Person();
+				person.setName("bob" + i);
+				this.personDao.create(person);
+				created.add(person.getId());
+			}
+			return created;
+		});
+		this.provider.release();
+	}
+
+	@After
+	public void tearDown() {
+		this.provider.inTransaction(em -> em.createQuery("delete from person").executeUpdate());
+		this.provider.release();
+	}
+
+	@Test
+	public void streamDetachesOnlyTheRowsItLoaded() {
+		this.provider.inTransaction(em -> {
+			final Person managed = this.personDao.read(this.ids.get(3));
+			final List<Person> streamed;
+			try (Stream<Person> persons = this.personDao.streamAll()) {
+				streamed = persons.collect(Collectors.toList());
+			}
+			assertEquals(10, streamed.size());
+			for (final Person person : streamed) {
+				if (person.getId() == managed.getId()) {
+					assertSame(managed, person);
+					assertTrue(em.contains(person));
+				} else {
+					assertFalse(em.contains(person));
+				}
+			}
+			managed.setName("bob3-modifié");
+			return null;
+		});
+		this.provider.release();
+		assertEquals("bob3-modifié", this.personDao.read(this.ids.get(3)).getName());
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.dao.KeysetPage;
+import com.demo.entities.Person;
+import com.demo.entities.Person_;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Routage et fusion des résultats du DAO réparti sur trois bases.
+ */
+public class ShardedGenericDaoTest {
+
+	private static final int SHARDS = 3;
+
+	private static final List<EntityManagerFactory> ENTITY_MANAGER_FACTORIES = new ArrayList<>();
+
+	private List<ThreadLocalEntityManagerProvider> providers;
+
+	private List<PersonDaoImpl> shards;
+
+	private ShardedGenericDao<Person, Integer> dao;
+
+	@BeforeClass
+	public static void createEntityManagerFactories() {
+		for (int i = 0; i < SHARDS; i++) {
+			final Map<String, String> properties = new HashMap<>();
+			properties.put("hibernate.show_sql", "false");
+			properties.put("hibernate.generate_statistics", "true");
+			ENTITY_MANAGER_FACTORIES.add(Persistence.createEntityManagerFactory("persistence-unit-shard-" + i, properties));
+		}
+	}
+
+	@AfterClass
+	public static void closeEntityManagerFactories() {
+		ENTITY_MANAGER_FACTORIES.forEach(EntityManagerFactory::close);
+		ENTITY_MANAGER_FACTORIES.clear();
+	}
+
+	@Before
+	public void setUp() {
+		this.providers = new ArrayList<>();
+		this.shards = new ArrayList<>();
+		for (final EntityManagerFactory entityManagerFactory : ENTITY_MANAGER_FACTORIES) {
+			final ThreadLocalEntityManagerProvider provider = new ThreadLocalEntityManagerProvider(entityManagerFactory);
+			final PersonDaoImpl personDao = new PersonDaoImpl();
+			personDao.setEntityManagerProvider(provider);
+			this.providers.add(provider);
+			this.shards.add(personDao);
+		}
+		this.dao = new ShardedGenericDao<>(this.shards, this.providers);
+	}
+
+	@After
+	public void tearDown() {
+		this.dao.deleteAll();
+		this.dao.close();
+		this.releaseAll();
+	}
+
+	@Test
+	public void createGoesToTheShardOfItsIdentifier() {
+		final List<Person> persons = this.createPersons(60);
+		for (final Person person : persons) {
+			final int shard = this.dao.shardOf(person.getId());
+			for (int i = 0; i < SHARDS; i++) {
+				if (i == shard) {
+					assertNotNull(this.shards.get(i).read(person.getId()));
+				} else {
+					assertNull(this.shards.get(i).read(person.getId()));
+				}
+			}
+			assertEquals(person.getName(), this.dao.read(person.getId()).getName());
+		}
+		for (int i = 0; i < SHARDS; i++) {
+			assertTrue("shard " + i + " vide", this.shards.get(i).count() > 0);
+		}
+	}
+
+	@Test
+	public void queriesFanOutToEveryShard() {
+		this.createPersons(60);
+		assertEquals(60L, this.dao.count());
+		assertEquals(60, this.dao.readAll().size());
+		assertEquals(60, this.dao.readAllColumnar().size());
+		assertEquals(6, this.dao.findAllByAttributes(Collections.singletonMap("name", "bob7")).size());
+	}
+
+	@Test
+	public void readAllOrderedMergesTheSortedShards() {
+		final List<Person> persons = this.createPersons(60);
+		final List<Integer> expected = persons.stream()
+						.sorted(Comparator.comparing(Person::getName).reversed().thenComparing(Person::getId))
+						.map(Person::getId).collect(Collectors.toList());
+		final CriteriaBuilder cb = ENTITY_MANAGER_FACTORIES.get(0).getCriteriaBuilder();
+		final Root<Person> root = cb.createQuery(Person.class).from(Person.class);
+		final List<Integer> merged = this.dao.readAll(cb.desc(root.get(Person_.name)), cb.asc(root.get(Person_.id)))
+						.stream().map(Person::getId).collect(Collectors.toList());
+		assertEquals(expected, merged);
+	}
+
+	@Test
+	public void readPageWalksAllShardsInKeyOrder() {
+		final List<Integer> expected = this.createPersons(60).stream().map(Person::getId).sorted()
+						.collect(Collectors.toList());
+		final List<Integer> seen = new ArrayList<>();
+		Integer lastSeen = null;
+		int pages = 0;
+		do {
+			final KeysetPage<Person, Integer> page = this.dao.readPage(Person_.id, lastSeen, 7);
+			page.getContent().forEach(person -> seen.add(person.getId()));
+			lastSeen = page.getNextKey();
+			pages++;
+		} while (lastSeen != null);
+		assertEquals(expected, seen);
+		assertEquals(9, pages);
+	}
+
+	@Test
+	public void routingDoesNotOpenAnEntityManagerOnTheFirstShard() {
+		final List<Person> persons = this.createPersons(60);
+		final Person elsewhere = persons.stream().filter(person -> this.dao.shardOf(person.getId()) != 0)
+						.findFirst().get();
+		this.dao.detachEntity(elsewhere);
+		this.dao.readAllColumnar();
+		assertNull(this.providers.get(0).getCurrentEntityManager());
+	}
+
+	@Test
+	public void singleShardOperationsReleaseTheirEntityManager() {
+		final List<Person> persons = this.createPersons(60);
+		final Person person = persons.get(0);
+		this.dao.read(person.getId());
+		person.setName("alice");
+		this.dao.update(person);
+		this.dao.delete(persons.get(1));
+		for (int i = 0; i < SHARDS; i++) {
+			assertNull("shard " + i, this.providers.get(i).getCurrentEntityManager());
+		}
+	}
+
+	@Test
+	public void readSeesTheLatestCommittedState() {
+		final Person person = this.createPersons(1).get(0);
+		final Person first = this.dao.read(person.getId());
+		this.dao.updateAttributes(person.getId(), Collections.<String, Object> singletonMap("name", "alice"));
+		final Person second = this.dao.read(person.getId());
+		assertNotSame(first, second);
+		assertEquals("alice", second.getName());
+	}
+
+	@Test
+	public void createAllGeneratesTheIdentifiantsInOneTransaction() {
+		final Statistics statistics = ENTITY_MANAGER_FACTORIES.get(0).unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		this.createPersons(60);
+		// une transaction pour les identifiants, une pour l'insertion du shard 0
+		assertEquals(2L, statistics.getTransactionCount());
+	}
+
+	@Test
+	public void aCallerTransactionIsJoinedAndKeptOpen() {
+		final Person person = this.createPersons(1).get(0);
+		final ThreadLocalEntityManagerProvider provider = this.providers.get(this.dao.shardOf(person.getId()));
+		provider.inTransaction(em -> {
+			final Person managed = this.dao.read(person.getId());
+			assertTrue(em.contains(managed));
+			managed.setName("alice");
+			return null;
+		});
+		assertNotNull(provider.getCurrentEntityManager());
+		provider.release();
+		assertEquals("alice", this.dao.read(person.getId()).getName());
+	}
+
+	private List<Person> createPersons(final int count) {
+		final List<Person> persons = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final Person person = new Person();
+			person.setName("bob" + i % 10);
+			persons.add(person);
+		}
+		this.dao.createAll(persons);
+		return persons;
+	}
+
+	private void releaseAll() {
+		this.providers.forEach(ThreadLocalEntityManagerProvider::release);
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.Persistence;
+import javax.persistence.Version;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Mise à jour partielle d'une entité versionnée : la version est incrémentée
+ * et le verrouillage optimiste reste actif.
+ */
+public class VersionedUpdateAttributesTest {
+
+	private static EntityManagerFactory entityManagerFactory;
+
+	private ThreadLocalEntityManagerProvider provider;
+
+	private AbstractGenericDaoImpl<Item, Integer> itemDao;
+
+	@BeforeClass
+	public static void createEntityManagerFactory() {
+		// unité de src/test/resources, qui déclare l'entité de test
+		entityManagerFactory = Persistence.createEntityManagerFactory("persistence-unit-test");
+	}
+
+	@AfterClass
+	public static void closeEntityManagerFactory() {
+		entityManagerFactory.close();
+	}
+
+	@Before
+	public void setUp() {
+		this.provider = new ThreadLocalEntityManagerProvider(entityManagerFactory);
+		this.itemDao = new AbstractGenericDaoImpl<Item, Integer>(Item.class) {
+		};
+		this.itemDao.setEntityManagerProvider(this.provider);
+	}
+
+	@After
+	public void tearDown() {
+		this.provider.inTransaction(em -> em.createQuery("delete from VersionedItem").executeUpdate());
+		this.provider.release();
+	}
+
+	@Test
+	public void staleCopyCannotBeMergedAfterAPartialUpdate() {
+		final Item stale = this.createItem();
+		this.provider.inTransaction(em -> this.itemDao.updateAttributes(stale.getId(),
+						Collections.<String, Object> singletonMap("name", "modifié")));
+		this.provider.release();
+		assertEquals(1, this.itemDao.read(stale.getId()).getVersion());
+		this.provider.release();
+
+		stale.setLabel("périmé");
+		try {
+			this.provider.inTransaction(em -> this.itemDao.update(stale));
+			fail("copie périmée fusionnée");
+		} catch (final OptimisticLockException e) {
+			this.provider.release();
+			assertEquals("modifié", this.itemDao.read(stale.getId()).getName());
+		}
+	}
+
+	@Test
+	public void managedInstanceFollowsTheIncrementedVersion() {
+		final int id = this.createItem().getId();
+		this.provider.inTransaction(em -> {
+			final Item managed = this.itemDao.read(id);
+			this.itemDao.updateAttributes(id, Collections.<String, Object> singletonMap("name", "modifié"));
+			assertEquals(1, managed.getVersion());
+			// flushé avec « where version = 1 »
+			managed.setLabel("étiquette");
+			return null;
+		});
+		this.provider.release();
+		final Item reloaded = this.itemDao.read(id);
+		assertEquals("modifié", reloaded.getName());
+		assertEquals("étiquette", reloaded.getLabel());
+		assertEquals(2, reloaded.getVersion());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void versionCannotBeGiven() {
+		this.itemDao.updateAttributes(1, Collections.<String, Object> singletonMap("version", 5));
+	}
+
+	private Item createItem() {
+		final Item item = new Item();
+		item.setName("item");
+		this.provider.inTransaction(em -> {
+			this.itemDao.create(item);
+			return null;
+		});
+		this.provider.release();
+		return item;
+	}
+
+	/**
+	 * entité versionnée des essais.
+	 */
+	@Entity(name = "VersionedItem")
+	public static class Item {
+
+		@Id
+		@GeneratedValue
+		private int id;
+
+		@Version
+		private int version;
+
+		private String name;
+
+		private String label;
+
+		public int getId() {
+			return this.id;
+		}
+
+		public void setId(final int id) {
+			this.id = id;
+		}
+
+		public int getVersion() {
+			return this.version;
+		}
+
+		public void setVersion(final int version) {
+			this.version = version;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public String getLabel() {
+			return this.label;
+		}
+
+		public void setLabel(final String label) {
+			this.label = label;
+		}
+	}
+
+}
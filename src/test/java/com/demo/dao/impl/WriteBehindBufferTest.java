@@ -0,0 +1,127 @@
+package com.demo.dao.impl;
+
+import com.demo.conf.ThreadLocalEntityManagerProvider;
+import com.demo.entities.Person;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Regroupement des créations par le buffer d'écriture.
+ */
+public class WriteBehindBufferTest {
+
+	private static EntityManagerFactory entityManagerFactory;
+
+	private ThreadLocalEntityManagerProvider provider;
+
+	private PersonDaoImpl personDao;
+
+	private WriteBehindBuffer<Person, Integer> buffer;
+
+	@BeforeClass
+	public static void createEntityManagerFactory() {
+		entityManagerFactory = Persistence.createEntityManagerFactory("persistence-unit",
+						Collections.singletonMap("hibernate.show_sql", "false"));
+	}
+
+	@AfterClass
+	public static void closeEntityManagerFactory() {
+		entityManagerFactory.close();
+	}
+
+	@Before
+	public void setUp() {
+		this.provider = new ThreadLocalEntityManagerProvider(entityManagerFactory);
+		this.personDao = new PersonDaoImpl();
+		this.personDao.setEntityManagerProvider(this.provider);
+		// un seul lot pour les 10 créations soumises d'affilée
+		this.buffer = new WriteBehindBuffer<>(this.personDao, this.provider, 10, 1, TimeUnit.SECONDS, 100);
+	}
+
+	@After
+	public void tearDown() {
+		this.buffer.close();
+		this.provider.inTransaction(em -> em.createQuery("delete from person").executeUpdate());
+		this.provider.release();
+	}
+
+	@Test
+	public void batchIsCreatedInOneTransaction() {
+		final List<CompletableFuture<Integer>> ids = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			ids.add(this.buffer.create(newPerson("bob" + i)));
+		}
+		ids.forEach(id -> assertNotEquals(0, id.join().intValue()));
+		assertEquals(1, this.buffer.getBatchCount());
+		assertEquals(10, this.buffer.getRowCount());
+		assertEquals(10L, this.personDao.count());
+	}
+
+	@Test
+	public void failedBatchOnlyFailsTheOffendingCall() {
+		final List<Person> persons = new ArrayList<>();
+		final List<CompletableFuture<Integer>> ids = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			// name est un VARCHAR(255)
+			final Person person = newPerson(i == 4 ? String.join("", Collections.nCopies(300, "x")) : "bob" + i);
+			persons.add(person);
+			ids.add(this.buffer.create(person));
+		}
+		for (int i = 0; i < 10; i++) {
+			if (i == 4) {
+				assertTrue(this.failed(ids.get(i)));
+			} else {
+				assertNotEquals(0, ids.get(i).join().intValue());
+			}
+		}
+		assertEquals(1, this.buffer.getFailedBatchCount());
+		assertEquals(1, this.buffer.getFailedRowCount());
+		assertEquals(9L, this.personDao.count());
+
+		// l'identifiant attribué par le persist annulé a été remis à zéro
+		final Person rejected = persons.get(4);
+		assertEquals(0, rejected.getId());
+		rejected.setName("bob4");
+		final int id = this.buffer.create(rejected).join();
+		assertEquals(rejected.getId(), id);
+		assertNotEquals(0, id);
+		assertEquals(10L, this.personDao.count());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void createAfterCloseIsRejected() {
+		this.buffer.close();
+		this.buffer.create(newPerson("bob"));
+	}
+
+	private boolean failed(final CompletableFuture<Integer> id) {
+		try {
+			id.join();
+			return false;
+		} catch (final RuntimeException e) {
+			return true;
+		}
+	}
+
+	private static Person newPerson(final String name) {
+		final Person person = new Person();
+		person.setName(name);
+		return person;
+	}
+
+}